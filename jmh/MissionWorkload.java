@@ -0,0 +1,114 @@
+import bench.Workload;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+
+/**
+ * The parts of a mission timed by bench.MissionBenchmark, on one generated scenario. Map
+ * state changed by a call is restored from a copy of the parsed map.
+ */
+public class MissionWorkload implements Workload {
+    private static final int SEARCH_PAIRS = 10;
+
+    private String[] files;
+    private Mission mission;
+    private Grid grid;
+    private Grid saved;
+
+    private int[] pairs;
+    private int[] walk;
+
+    // Search of the last findPaths call, reused while the queue stays the same
+    private PathSearch search;
+    private String searchQueue;
+
+    private final CustomHeap heap = new CustomHeap();
+    private double[] keys = new double[0];
+
+    public void load(String prefix, int size) throws IOException {
+        ScenarioGenerator.main(new String[]{prefix, "--width=" + size, "--height=" + size});
+        files = new String[]{prefix + "_land.txt", prefix + "_travel.txt", prefix + "_mission.txt"};
+        parse("text");
+        mission = Functions.mission;
+        grid = mission.grid;
+        saved = new Grid(grid);
+
+        SplittableRandom random = new SplittableRandom(7);
+        pairs = new int[SEARCH_PAIRS * 2];
+        for (int i = 0; i < pairs.length; i++) {
+            do {
+                pairs[i] = random.nextInt(grid.cellCount());
+            } while (grid.type(pairs[i]) != 0);
+        }
+
+        // Random walk of unit moves from the middle of the map
+        random = new SplittableRandom(11);
+        walk = new int[REVEAL_STEPS];
+        int x = grid.width / 2;
+        int y = grid.height / 2;
+        for (int i = 0; i < walk.length; i++) {
+            int[] direction = Grid.DIRECTIONS[random.nextInt(4)];
+            x = Math.min(Math.max(x + direction[0], 0), grid.width - 1);
+            y = Math.min(Math.max(y + direction[1], 0), grid.height - 1);
+            walk[i] = grid.cellOf(x, y);
+        }
+    }
+
+    public void parse(String parser) throws IOException {
+        Functions.parserKind = parser;
+        Functions.parseInputs(files[0], files[1], files[2]);
+    }
+
+    public int findPaths(String searchKind, String queue) {
+        Functions.goalDirected = searchKind.equals("astar");
+        Functions.bidirectional = searchKind.equals("bidirectional");
+        if (!queue.equals(searchQueue)) {
+            search = new PathSearch(grid, queue);
+            searchQueue = queue;
+        }
+        int length = 0;
+        for (int i = 0; i < pairs.length; i += 2) {
+            length += search.findPath(pairs[i], pairs[i + 1], null).length;
+        }
+        return length;
+    }
+
+    public int heap(int count) {
+        if (keys.length != count) {
+            SplittableRandom random = new SplittableRandom(13);
+            keys = new double[count];
+            for (int i = 0; i < count; i++) keys[i] = random.nextDouble() * count;
+        }
+        heap.clear();
+        for (int i = 0; i < count; i++) heap.insert(i, keys[i]);
+        int last = -1;
+        while (!heap.isEmpty()) last = heap.extractMin();
+        return last;
+    }
+
+    public void reveal(boolean fullDisc) {
+        grid.copyRevealedFrom(saved);
+        mission.lastRevealCenter = -1;
+        for (int cell : walk) {
+            if (fullDisc) mission.lastRevealCenter = -1;
+            mission.revealNodes(cell, mission.radius);
+        }
+    }
+
+    public int wizardHelp(String mode) {
+        Functions.parallelWizardHelp = mode.equals("parallel");
+        Functions.scoreHelpWithFields = mode.equals("fields");
+        ArrayList<Objective> objectives = mission.objectives;
+        int chosen = 0;
+        for (int i = 0; i < objectives.size(); i++) {
+            Objective objective = objectives.get(i);
+            if (!objective.offersHelp) continue;
+            int next = i + 1 < objectives.size() ? objectives.get(i + 1).target : -1;
+            chosen += mission.handleWizardHelp(objective.helpOptions, objective.target, next);
+            // Undo cells left passable by the help
+            grid.copyRevealedFrom(saved);
+        }
+        return chosen;
+    }
+}
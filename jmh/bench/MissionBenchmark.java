@@ -0,0 +1,121 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times the parts of a mission on a generated scenario: parsing, path searches, the search
+ * heap, revealing and the wizard's help, each in its modes. The scenario is size x size with
+ * the generator's other defaults; choose the size with -p size=N.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MissionBenchmark {
+    @State(Scope.Benchmark)
+    public static class Scenario {
+        @Param("300")
+        public int size;
+
+        Workload workload;
+        private Path directory;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            directory = Files.createTempDirectory("mission-benchmark");
+            workload = Workload.create();
+            workload.load(directory.resolve("scenario").toString(), size);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            try (var files = Files.list(directory)) {
+                for (Path file : (Iterable<Path>) files::iterator) Files.delete(file);
+            }
+            Files.delete(directory);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Parser {
+        @Param({"text", "mapped", "parallel"})
+        public String parser;
+    }
+
+    @State(Scope.Benchmark)
+    public static class Search {
+        // Bidirectional search always uses binary heaps, whatever the queue
+        @Param({"dijkstra", "astar", "bidirectional"})
+        public String search;
+
+        @Param({"binary", "dary", "radix"})
+        public String queue;
+    }
+
+    @State(Scope.Benchmark)
+    public static class Heap {
+        @Param("100000")
+        public int count;
+    }
+
+    @State(Scope.Benchmark)
+    public static class Reveal {
+        // Leading edge of the disc after a unit move, or the whole disc at every step
+        @Param({"false", "true"})
+        public boolean fullDisc;
+    }
+
+    @State(Scope.Benchmark)
+    public static class Help {
+        @Param({"serial", "parallel", "fields"})
+        public String mode;
+    }
+
+    @Benchmark
+    public void parseInputs(Scenario scenario, Parser parser) throws IOException {
+        scenario.workload.parse(parser.parser);
+    }
+
+    // Time of all the searches between the scenario's 10 pairs of cells
+    @Benchmark
+    public int findPath(Scenario scenario, Search search) {
+        return scenario.workload.findPaths(search.search, search.queue);
+    }
+
+    @Benchmark
+    public int heapInsertExtractMin(Scenario scenario, Heap heap) {
+        return scenario.workload.heap(heap.count);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    @OperationsPerInvocation(Workload.REVEAL_STEPS)
+    public void revealNodes(Scenario scenario, Reveal reveal) {
+        scenario.workload.reveal(reveal.fullDisc);
+    }
+
+    // Time of the help at every objective that offers it
+    @Benchmark
+    public int handleWizardHelp(Scenario scenario, Help help) {
+        return scenario.workload.wizardHelp(help.mode);
+    }
+}
@@ -0,0 +1,45 @@
+package bench;
+
+import java.io.IOException;
+
+/**
+ * The parts of a mission timed by MissionBenchmark. JMH only accepts benchmarks in a named
+ * package, which cannot refer to the program's classes in the default package, so the
+ * benchmarks reach them through this interface and MissionWorkload implements it there.
+ */
+public interface Workload {
+    // Steps of the random walk revealed by one call to reveal
+    int REVEAL_STEPS = 100_000;
+
+    /**
+     * Writes a size x size scenario with ScenarioGenerator under the given prefix and parses it.
+     */
+    void load(String prefix, int size) throws IOException;
+
+    // Parses the scenario again with the given parser
+    void parse(String parser) throws IOException;
+
+    // Searches between fixed random pairs of free cells; returns the total path length
+    int findPaths(String search, String queue);
+
+    // Inserts the given number of random keys into a CustomHeap and extracts them all
+    int heap(int count);
+
+    // Reveals along a fixed random walk, starting from the parsed map's revealed cells
+    void reveal(boolean fullDisc);
+
+    // Scores the help offered at every objective, then undoes what it opened
+    int wizardHelp(String mode);
+
+    /**
+     * Creates the default-package implementation, which is on the class path with the
+     * benchmarks.
+     */
+    static Workload create() {
+        try {
+            return (Workload) Class.forName("MissionWorkload").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("MissionWorkload is missing from the class path", e);
+        }
+    }
+}
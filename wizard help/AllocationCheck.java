@@ -0,0 +1,71 @@
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+
+/**
+ * Checks that replanning allocates nothing once warmed up. Each round plans paths between
+ * fixed pairs of free cells and walks every path, revealing cells and logging each move as
+ * the simulation does; the map is restored before every round, so all rounds do the same
+ * work. The heap bytes allocated by this thread in the measured rounds must be zero.
+ * Usage: java AllocationCheck <land> <travel> <mission> [flags]
+ */
+class AllocationCheck {
+    private static final int REPLANS = 200;
+    private static final int WARMUP_ROUNDS = 20;
+    private static final int MEASURED_ROUNDS = 5;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            throw new IllegalArgumentException("Usage: java AllocationCheck <land> <travel> <mission> [flags]");
+        }
+        Main.parseOptions(args, 3);
+        Functions.parseInputs(args[0], args[1], args[2]);
+        Mission mission = Functions.mission;
+        Grid grid = mission.grid;
+
+        SplittableRandom random = new SplittableRandom(3);
+        int[] pairs = new int[REPLANS * 2];
+        for (int i = 0; i < pairs.length; i++) {
+            do {
+                pairs[i] = random.nextInt(grid.cellCount());
+            } while (grid.type(pairs[i]) != 0);
+        }
+
+        Path output = Files.createTempFile("allocation-check", ".txt");
+        mission.openOutput(output.toString());
+        Grid saved = new Grid(grid);
+        int[] path = new int[grid.maxPathLength()];
+
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            runRound(mission, pairs, path, saved);
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long before = threads.getCurrentThreadAllocatedBytes();
+        for (int round = 0; round < MEASURED_ROUNDS; round++) {
+            runRound(mission, pairs, path, saved);
+        }
+        long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+
+        mission.writeOutput(output.toString());
+        Files.delete(output);
+        System.out.printf("Allocated %d bytes in %d replans (%.1f bytes per replan)%n", allocated,
+                REPLANS * MEASURED_ROUNDS, (double) allocated / (REPLANS * MEASURED_ROUNDS));
+        if (allocated > 0) System.exit(1);
+    }
+
+    private static void runRound(Mission mission, int[] pairs, int[] path, Grid saved) {
+        Grid grid = mission.grid;
+        grid.copyRevealedFrom(saved);
+        mission.lastRevealCenter = -1;
+
+        for (int i = 0; i < pairs.length; i += 2) {
+            int length = mission.planPath(null, pairs[i], pairs[i + 1], path);
+            for (int j = 1; j < length; j++) {
+                mission.outputLog.append("Moving to ").append(grid.x(path[j])).append('-').append(grid.y(path[j])).endLine();
+                mission.revealNodes(path[j], mission.radius);
+            }
+        }
+    }
+}
@@ -0,0 +1,56 @@
+/**
+ * Types and revealed flags of a map's cells, kept in tiles of Grid.TILE_SIZE cells that are
+ * allocated when the first cell in them is given a type. Unlike the travel times, each
+ * mission changes them, so every mission works on its own copy.
+ */
+interface CellStates {
+    // Type of a cell, Grid.ABSENT for cells that do not exist
+    int type(int cell);
+
+    // Sets the type of a cell, allocating its tile; cells of type 1 start out revealed
+    void setType(int cell, int cellType);
+
+    // Revealed status: 1 for revealed (impassable), 0 for hidden; 0 for cells that do not exist
+    byte revealed(int cell);
+
+    // Whether the cell exists and is not revealed impassable, with one tile lookup
+    boolean isOpen(int cell);
+
+    // Changes the revealed status of an existing cell
+    void setRevealed(int cell, byte value);
+
+    // Whether the cell has been explicitly revealed during traversal
+    boolean isRevealed(int cell);
+
+    void markRevealed(int cell);
+
+    // Copies a tile of revealed statuses into the given array; a tile without cells is all 0
+    void copyRevealedTile(int tileIndex, byte[] destination);
+
+    // Restores the revealed statuses saved in a copy of these states, see copy()
+    void copyRevealedFrom(CellStates states);
+
+    // Number of tiles that hold cells
+    int allocatedTiles();
+
+    /**
+     * Copies the states for a separate mission; neither sees the other's changes afterwards.
+     */
+    CellStates copy();
+
+    /**
+     * Creates states for the given number of cells: heap arrays, or tiles in direct buffers or
+     * a memory-mapped temporary file.
+     */
+    static CellStates allocate(String storage, int cellCount) {
+        switch (storage) {
+            case "heap":
+                return new HeapCellStates(cellCount);
+            case "direct":
+            case "mapped":
+                return new OffHeapCellStates(storage, cellCount);
+            default:
+                throw new IllegalArgumentException("Unknown storage: " + storage);
+        }
+    }
+}
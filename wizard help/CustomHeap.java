@@ -1,100 +1,143 @@
-import java.util.ArrayList;
-
-public class CustomHeap {
-    private ArrayList<Node> heap; // ArrayList to hold heap elements
-
-    // Constructor
-    public CustomHeap() {
-        this.heap = new ArrayList<>();
-    }
-
-    // Insert a new node into the heap
-    public void insert(Node node) {
-        heap.add(node);           // Add the new node at the end
-        siftUp(heap.size() - 1);  // Adjust its position
-    }
-
-    // Remove and return the min (smallest distance node)
-    public Node extractMin() {
-        if (isEmpty()) {
-            throw new IllegalStateException("Heap is empty");
-        }
-
-        Node min = heap.get(0);                     // Root element is the min
-        Node last = heap.remove(heap.size() - 1);   // Remove the last element
-
-        if (!heap.isEmpty()) {
-            heap.set(0, last); // Move the last element to the root
-            siftDown(0);      // Adjust the heap
-        }
-
-        return min;
-    }
-
-    // Peek at the min element without removing it
-
-    // Check if the heap is empty
-    public boolean isEmpty() {
-        return heap.isEmpty();
-    }
-
-    // Get the size of the heap
-    public int getSize() {
-        return heap.size();
-    }
-
-    // Sift up to maintain min-heap property
-    private void siftUp(int index) {
-        while (index > 0) {
-            int parentIndex = (index - 1) / 2;
-
-            // Compare with parent
-            if (heap.get(index).compareTo(heap.get(parentIndex)) < 0) { // Min-heap condition
-                swap(index, parentIndex);
-                index = parentIndex; // Move up to the parent's index
-            } else {
-                break;
-            }
-        }
-    }
-
-    // Sift down to maintain min-heap property
-    private void siftDown(int index) {
-        int leftChild;
-        int rightChild;
-        int smallest = index;
-
-        while (true) {
-            leftChild = 2 * index + 1;
-            rightChild = 2 * index + 2;
-
-            // Compare with left child
-            if (leftChild < heap.size() &&
-                    heap.get(leftChild).compareTo(heap.get(smallest)) < 0) {
-                smallest = leftChild;
-            }
-
-            // Compare with right child
-            if (rightChild < heap.size() &&
-                    heap.get(rightChild).compareTo(heap.get(smallest)) < 0) {
-                smallest = rightChild;
-            }
-            // If the smallest is still the current node, stop
-            if (smallest == index) {
-                break;
-            }
-            swap(index, smallest);
-            index = smallest; // Move to the smallest child
-        }
-
-
-    }
-    // Swap two elements in the heap
-    private void swap(int i, int j) {
-        Node temp = heap.get(i);
-        heap.set(i, heap.get(j));
-        heap.set(j, temp);
-    }
-
-}
-
+import java.util.Arrays;
+
+public class CustomHeap implements SearchQueue {
+    private double[] keys; // Priority of each heap element
+    private int[] cells;   // Cell id of each heap element
+    private int size;      // Number of elements in the heap
+
+    // Current distances that replace the stored priorities, or null to use the stored ones
+    private final SearchScratch distances;
+
+    // Constructor
+    public CustomHeap() {
+        this(null);
+    }
+
+    /**
+     * Heap whose elements are keyed by the current distance of their cell in the given scratch
+     * rather than the priority they were inserted with. Lowering a cell's distance thus lowers
+     * every entry of that cell in place, as the original heap of Node objects did, so Dijkstra
+     * settles cells of equal distance in the same order and picks the same one of several
+     * equally fast paths.
+     */
+    public CustomHeap(SearchScratch distances) {
+        this.keys = new double[16];
+        this.cells = new int[16];
+        this.size = 0;
+        this.distances = distances;
+    }
+
+    // Remove all elements from the heap
+    @Override
+    public void clear() {
+        size = 0;
+    }
+
+    // Insert a cell with the given priority into the heap (a cell may be inserted several times)
+    @Override
+    public void insert(int cell, double key) {
+        if (size == cells.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            cells = Arrays.copyOf(cells, size * 2);
+        }
+        keys[size] = key;     // Add the new element at the end
+        cells[size] = cell;
+        siftUp(size++);       // Adjust its position
+    }
+
+    // Remove and return the cell with the smallest priority
+    @Override
+    public int extractMin() {
+        if (isEmpty()) {
+            throw new IllegalStateException("Heap is empty");
+        }
+
+        int min = cells[0]; // Root element is the min
+        size--;
+
+        if (size > 0) {
+            keys[0] = keys[size]; // Move the last element to the root
+            cells[0] = cells[size];
+            siftDown(0);          // Adjust the heap
+        }
+
+        return min;
+    }
+
+    // Smallest priority in the heap, without removing it
+    public double peekKey() {
+        if (isEmpty()) {
+            throw new IllegalStateException("Heap is empty");
+        }
+        return key(0);
+    }
+
+    // Check if the heap is empty
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    // Get the size of the heap
+    public int getSize() {
+        return size;
+    }
+
+    // Sift up to maintain min-heap property
+    private void siftUp(int index) {
+        while (index > 0) {
+            int parentIndex = (index - 1) / 2;
+
+            // Compare with parent
+            if (key(index) < key(parentIndex)) { // Min-heap condition
+                swap(index, parentIndex);
+                index = parentIndex; // Move up to the parent's index
+            } else {
+                break;
+            }
+        }
+    }
+
+    // Sift down to maintain min-heap property
+    private void siftDown(int index) {
+        int leftChild;
+        int rightChild;
+        int smallest = index;
+
+        while (true) {
+            leftChild = 2 * index + 1;
+            rightChild = 2 * index + 2;
+
+            // Compare with left child
+            if (leftChild < size && key(leftChild) < key(smallest)) {
+                smallest = leftChild;
+            }
+
+            // Compare with right child
+            if (rightChild < size && key(rightChild) < key(smallest)) {
+                smallest = rightChild;
+            }
+            // If the smallest is still the current node, stop
+            if (smallest == index) {
+                break;
+            }
+            swap(index, smallest);
+            index = smallest; // Move to the smallest child
+        }
+    }
+
+    // Priority of the element at a heap index
+    private double key(int index) {
+        return distances != null ? distances.reachedDistance(cells[index]) : keys[index];
+    }
+
+    // Swap two elements in the heap
+    private void swap(int i, int j) {
+        double tempKey = keys[i];
+        keys[i] = keys[j];
+        keys[j] = tempKey;
+        int tempCell = cells[i];
+        cells[i] = cells[j];
+        cells[j] = tempCell;
+    }
+}
@@ -0,0 +1,235 @@
+import java.util.Arrays;
+
+/**
+ * Incremental planner (D* Lite) for the path towards one objective.
+ * The search runs backwards from the target, so the visitor can move and newly
+ * revealed obstacles only repair the affected part of the shortest-path tree.
+ * One planner serves every objective of a mission. It remembers the cells whose state it
+ * wrote and resets only those, so heading for a new target does not sweep the map.
+ */
+class DStarLite {
+    private static final double INF = Double.MAX_VALUE;
+
+    private final Grid grid;
+    private int target;
+    private int start;
+
+    // Search state per cell
+    private final double[] g;   // current distance to the target
+    private final double[] rhs; // one-step lookahead distance to the target
+    private final double[] key; // key the cell is queued with
+    private final boolean[] inQueue;
+
+    // Cells whose state was written since the last reset
+    private final boolean[] touched;
+    private int[] touchedCells = new int[64];
+    private int touchedCount;
+
+    // Binary heap of (key, cell) entries; outdated entries are skipped when popped
+    private double[] heapKeys = new double[64];
+    private int[] heapCells = new int[64];
+    private int heapSize = 0;
+
+    DStarLite(Grid grid) {
+        this.grid = grid;
+
+        int cellCount = grid.cellCount();
+        g = new double[cellCount];
+        rhs = new double[cellCount];
+        key = new double[cellCount];
+        inQueue = new boolean[cellCount];
+        touched = new boolean[cellCount];
+        Arrays.fill(g, INF);
+        Arrays.fill(rhs, INF);
+    }
+
+    /**
+     * Starts planning towards a new target, forgetting everything known about the old one.
+     */
+    void reset(int newTarget) {
+        for (int i = 0; i < touchedCount; i++) {
+            int cell = touchedCells[i];
+            g[cell] = INF;
+            rhs[cell] = INF;
+            inQueue[cell] = false;
+            touched[cell] = false;
+        }
+        touchedCount = 0;
+        heapSize = 0;
+        target = newTarget;
+
+        touch(target);
+        rhs[target] = 0;
+        push(target, 0);
+    }
+
+    /**
+     * Returns the fastest path from the given cell to the target on the current map.
+     */
+    int[] plan(int from) {
+        start = from;
+        computeShortestPath();
+        return extractPath();
+    }
+
+    /**
+     * Notifies the planner that the passability of the given cells has changed.
+     */
+    void cellsChanged(int[] cells, int count) {
+        for (int i = 0; i < count; i++) {
+            // Only the cost of moving into the cell changes, so its neighbours need updating
+            updatePredecessors(cells[i]);
+        }
+    }
+
+    // Repairs g-values until the start cell is locally consistent
+    private void computeShortestPath() {
+        long settled = 0;
+        while (true) {
+            int u = peek();
+            if (u == -1) break;
+            if (key[u] >= Math.min(g[start], rhs[start]) && g[start] == rhs[start]) break;
+
+            pop();
+            inQueue[u] = false;
+            settled++;
+            if (g[u] > rhs[u]) {
+                g[u] = rhs[u];
+            } else {
+                g[u] = INF;
+                updateVertex(u);
+            }
+            updatePredecessors(u);
+        }
+        Functions.nodesSettled.add(settled);
+    }
+
+    // Recomputes rhs of a cell from its successors and fixes its queue membership
+    private void updateVertex(int cell) {
+        touch(cell);
+        if (cell != target) {
+            double best = INF;
+            for (int direction = 0; direction < 4; direction++) {
+                int next = grid.neighbour(cell, direction);
+                if (next == -1) continue;
+
+                double travelTime = cost(cell, next, direction);
+                if (travelTime == INF || g[next] == INF) continue;
+                best = Math.min(best, travelTime + g[next]);
+            }
+            rhs[cell] = best;
+        }
+
+        if (g[cell] != rhs[cell]) {
+            double newKey = Math.min(g[cell], rhs[cell]);
+            if (!inQueue[cell] || key[cell] != newKey) push(cell, newKey);
+        } else {
+            inQueue[cell] = false;
+        }
+    }
+
+    private void updatePredecessors(int cell) {
+        for (int direction = 0; direction < 4; direction++) {
+            int previous = grid.neighbour(cell, direction);
+            if (previous != -1 && grid.exists(previous)) {
+                updateVertex(previous);
+            }
+        }
+    }
+
+    // Walks down the g-values from the start, choosing the cheapest successor each step
+    private int[] extractPath() {
+        if (g[start] == INF) {
+            // Same result as reconstructing an unreachable target after Dijkstra
+            return new int[]{target};
+        }
+
+        int[] path = new int[16];
+        int length = 0;
+        int current = start;
+        path[length++] = current;
+        while (current != target) {
+            int bestNext = -1;
+            double best = INF;
+            for (int direction = 0; direction < 4; direction++) {
+                int next = grid.neighbour(current, direction);
+                if (next == -1) continue;
+
+                double travelTime = cost(current, next, direction);
+                if (travelTime == INF || g[next] == INF) continue;
+                if (travelTime + g[next] < best) {
+                    best = travelTime + g[next];
+                    bestNext = next;
+                }
+            }
+            current = bestNext;
+            if (length == path.length) path = Arrays.copyOf(path, length * 2);
+            path[length++] = current;
+        }
+        return Arrays.copyOf(path, length);
+    }
+
+    // Travel time for moving from one cell into its neighbour, INF if the move is not allowed
+    private double cost(int from, int to, int direction) {
+        if (!grid.isOpen(to)) return INF;
+
+        double travelTime = grid.travelTime(from, direction);
+        return travelTime > 0 ? travelTime : INF;
+    }
+
+    // Returns the cell of the smallest up-to-date heap entry, or -1 if there is none
+    private int peek() {
+        while (heapSize > 0) {
+            int cell = heapCells[0];
+            if (inQueue[cell] && key[cell] == heapKeys[0]) return cell;
+            pop();
+        }
+        return -1;
+    }
+
+    // Records a cell whose state is about to be written, so that reset restores it
+    private void touch(int cell) {
+        if (touched[cell]) return;
+        touched[cell] = true;
+        if (touchedCount == touchedCells.length) touchedCells = Arrays.copyOf(touchedCells, touchedCount * 2);
+        touchedCells[touchedCount++] = cell;
+    }
+
+    private void push(int cell, double cellKey) {
+        key[cell] = cellKey;
+        inQueue[cell] = true;
+
+        if (heapSize == heapCells.length) {
+            heapKeys = Arrays.copyOf(heapKeys, heapSize * 2);
+            heapCells = Arrays.copyOf(heapCells, heapSize * 2);
+        }
+        int index = heapSize++;
+        while (index > 0) {
+            int parentIndex = (index - 1) / 2;
+            if (heapKeys[parentIndex] <= cellKey) break;
+            heapKeys[index] = heapKeys[parentIndex];
+            heapCells[index] = heapCells[parentIndex];
+            index = parentIndex;
+        }
+        heapKeys[index] = cellKey;
+        heapCells[index] = cell;
+    }
+
+    private void pop() {
+        heapSize--;
+        double lastKey = heapKeys[heapSize];
+        int lastCell = heapCells[heapSize];
+        int index = 0;
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= heapSize) break;
+            if (child + 1 < heapSize && heapKeys[child + 1] < heapKeys[child]) child++;
+            if (heapKeys[child] >= lastKey) break;
+            heapKeys[index] = heapKeys[child];
+            heapCells[index] = heapCells[child];
+            index = child;
+        }
+        heapKeys[index] = lastKey;
+        heapCells[index] = lastCell;
+    }
+}
@@ -0,0 +1,33 @@
+/**
+ * Offsets of the cells within a radius of a center, the same cells revealNodes checks with
+ * dx^2 + dy^2 <= radius^2. The disc is stored as one half-width per row, so it can be
+ * scanned as contiguous spans of cell ids, and the cells gained by a unit move (the
+ * leading edge of the disc) are one cell per row.
+ */
+class DiscMask {
+    final int radius;
+
+    // halfWidth[d]: largest k with d^2 + k^2 <= radius^2, for 0 <= d <= radius
+    final int[] halfWidth;
+
+    DiscMask(int radius) {
+        this.radius = radius;
+        halfWidth = new int[Math.max(radius + 1, 0)];
+
+        long radiusSquared = (long) radius * radius;
+        int k = radius;
+        for (int d = 0; d <= radius; d++) {
+            // The half-width only shrinks as d grows
+            while ((long) d * d + (long) k * k > radiusSquared) k--;
+            halfWidth[d] = k;
+        }
+    }
+
+    /**
+     * Half-width of the disc at the given offset from the center, or -1 outside the disc.
+     */
+    int halfWidth(int offset) {
+        int d = Math.abs(offset);
+        return d <= radius ? halfWidth[d] : -1;
+    }
+}
@@ -0,0 +1,128 @@
+/**
+ * Travel times from every cell to one target on the current map, used to tell whether new
+ * travel times give a faster path than the one being followed. Edges that become faster are
+ * repaired in place, visiting only the cells that get closer to the target. Cells that close
+ * and edges that become slower are not repaired: the times then stay lower bounds, no longer
+ * exact, until the field is computed again.
+ */
+class DistanceField {
+    private static final double INF = Double.MAX_VALUE;
+
+    private final Grid grid;
+    private final SearchScratch scratch; // Time to the target, next cell towards it
+    private final CustomHeap queue = new CustomHeap();
+    private int target = -1;
+    private boolean exact;
+
+    DistanceField(Grid grid) {
+        this.grid = grid;
+        this.scratch = SearchScratch.create(grid);
+    }
+
+    // Whether the field holds the times to the given target
+    boolean isFor(int cell) {
+        return target != -1 && target == cell;
+    }
+
+    // Whether the times are exact rather than lower bounds
+    boolean isExact() {
+        return exact;
+    }
+
+    /**
+     * Forgets the times, for a map changed in ways the field cannot follow.
+     */
+    void clear() {
+        target = -1;
+    }
+
+    /**
+     * Keeps the times as lower bounds after cells closed or edges became slower.
+     */
+    void loosen() {
+        exact = false;
+    }
+
+    // Time from a cell to the target, INF if it cannot be reached
+    double time(int cell) {
+        return scratch.distance(cell);
+    }
+
+    /**
+     * Dijkstra backwards from the target; a path may start on a blocked cell, so blocked
+     * cells get a time but are never passed through.
+     */
+    void compute(int newTarget) {
+        target = newTarget;
+        exact = true;
+        scratch.reset();
+        queue.clear();
+        long settled = 0;
+
+        scratch.update(target, 0, -1);
+        queue.insert(target, 0);
+        while (!queue.isEmpty()) {
+            int cell = queue.extractMin();
+            if (scratch.isSettled(cell)) continue;
+            scratch.settle(cell);
+            settled++;
+            if (grid.isBlocked(cell)) continue; // Cannot be moved into
+
+            for (int direction = 0; direction < 4; direction++) {
+                int neighbour = grid.neighbour(cell, direction);
+                if (neighbour == -1 || !grid.exists(neighbour) || scratch.isSettled(neighbour)) continue;
+
+                double travelTime = grid.travelTime(cell, direction);
+                if (travelTime > 0 && travelTime + scratch.distance(cell) < scratch.distance(neighbour)) {
+                    scratch.update(neighbour, travelTime + scratch.distance(cell), cell);
+                    queue.insert(neighbour, scratch.distance(neighbour));
+                }
+            }
+        }
+        Functions.nodesSettled.add(settled);
+    }
+
+    /**
+     * Lowers the times after the given edges became faster.
+     *
+     * @param ends The cells at both ends of each edge, 2 * count entries.
+     */
+    void edgesFaster(int[] ends, int count) {
+        queue.clear();
+        long settled = 0;
+        for (int k = 0; k < 2 * count; k += 2) {
+            double travelTime = grid.edgeTime(ends[k], ends[k + 1]);
+            if (travelTime <= 0) continue;
+            lower(ends[k], ends[k + 1], travelTime);
+            lower(ends[k + 1], ends[k], travelTime);
+        }
+
+        // Every cell that got closer passes the gain on to the cells that move into it
+        while (!queue.isEmpty()) {
+            double key = queue.peekKey();
+            int cell = queue.extractMin();
+            if (key > scratch.distance(cell)) continue; // Lowered again since
+            settled++;
+            if (grid.isBlocked(cell)) continue;
+
+            for (int direction = 0; direction < 4; direction++) {
+                int neighbour = grid.neighbour(cell, direction);
+                if (neighbour == -1 || !grid.exists(neighbour)) continue;
+
+                double travelTime = grid.travelTime(cell, direction);
+                if (travelTime > 0) lower(neighbour, cell, travelTime);
+            }
+        }
+        Functions.nodesSettled.add(settled);
+    }
+
+    // Lowers the time of a cell to that of moving into a passable neighbour and on from there
+    private void lower(int from, int to, double travelTime) {
+        double toTime = scratch.distance(to);
+        if (toTime == INF || grid.isBlocked(to)) return;
+        if (travelTime + toTime < scratch.distance(from)) {
+            scratch.update(from, travelTime + toTime, to);
+            queue.insert(from, travelTime + toTime);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+import java.util.Arrays;
+
+/**
+ * Search state in arrays over every cell of the map.
+ */
+class FlatSearchScratch extends SearchScratch {
+    private final double[] distance;
+    private final int[] parent;
+    // 2 * epoch once distance and parent are written in that epoch, plus 1 once settled
+    private final int[] stamp;
+
+    FlatSearchScratch(int cellCount) {
+        super(cellCount);
+        distance = new double[cellCount];
+        parent = new int[cellCount];
+        stamp = new int[cellCount];
+    }
+
+    void clearStamps() {
+        Arrays.fill(stamp, 0);
+    }
+
+    double distance(int cell) {
+        return stamp[cell] >> 1 == epoch ? distance[cell] : Double.MAX_VALUE;
+    }
+
+    double reachedDistance(int cell) {
+        return distance[cell];
+    }
+
+    int parent(int cell) {
+        return stamp[cell] >> 1 == epoch ? parent[cell] : -1;
+    }
+
+    void update(int cell, double cellDistance, int cellParent) {
+        stamp[cell] = epoch << 1;
+        distance[cell] = cellDistance;
+        parent[cell] = cellParent;
+    }
+
+    boolean isSettled(int cell) {
+        return stamp[cell] == (epoch << 1 | 1);
+    }
+
+    void settle(int cell) {
+        stamp[cell] = epoch << 1 | 1;
+    }
+}
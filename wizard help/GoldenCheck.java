@@ -0,0 +1,122 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs Main on one scenario with each optional mode and checks that every output file is
+ * byte-identical to the reference: the given golden file, which the run without flags must
+ * match too, or else a run without flags. Each run is a separate JVM, so no static state
+ * carries over between modes. With --ties only the modes that choose the same path as the
+ * original program among equally fast ones are checked, for maps with whole-number times.
+ * Usage: java GoldenCheck <land> <travel> <mission> [golden_output] [--ties]
+ */
+class GoldenCheck {
+    private static final String[][] MODES = {
+            {"--incremental"},
+            {"--astar"},
+            {"--queue=dary"},
+            {"--queue=radix"},
+            {"--astar", "--queue=radix"},
+            {"--landmarks=8"},
+            {"--bidirectional"},
+            {"--tree-cache=4"},
+            {"--tree-cache=1", "--tree-cache-eviction=fifo"},
+            {"--parallel-help"},
+            {"--help-fields"},
+            {"--help-fields", "--parallel-help", "--incremental"},
+            {"--parser=mapped"},
+            {"--parser=parallel"},
+            {"--async-output"},
+            {"--storage=direct"},
+            {"--storage=mapped"},
+            {"--hpa=8", "--hpa-verify"},
+    };
+
+    // Flags that may choose another of several equally fast paths
+    private static final String[] TIE_BREAKING = {
+            "--incremental", "--astar", "--bidirectional", "--landmarks", "--queue=dary", "--queue=radix",
+            "--tree-cache"};
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        boolean ties = args.length > 0 && args[args.length - 1].equals("--ties");
+        if (ties) args = Arrays.copyOf(args, args.length - 1);
+        if (args.length < 3) {
+            throw new IllegalArgumentException("Usage: java GoldenCheck <land> <travel> <mission> [golden_output] [--ties]");
+        }
+        Path workDir = Files.createTempDirectory("golden-check");
+
+        List<String[]> modes = new ArrayList<>();
+        Path golden;
+        if (args.length > 3) {
+            golden = Path.of(args[3]);
+            modes.add(new String[0]);
+        } else {
+            golden = workDir.resolve("reference.txt");
+            run(args, golden);
+        }
+        byte[] expected = Files.readAllBytes(golden);
+
+        for (String[] mode : MODES) {
+            if (!ties || keepsTies(mode)) modes.add(mode);
+        }
+        Path snapshot = workDir.resolve("map.snapshot");
+        runMain("compile", args[0], args[1], snapshot.toString());
+        modes.add(new String[]{"--snapshot=" + snapshot});
+
+        int failures = 0;
+        for (String[] mode : modes) {
+            Path output = workDir.resolve("output.txt");
+            run(args, output, mode);
+            boolean same = Arrays.equals(expected, Files.readAllBytes(output));
+            if (!same) failures++;
+            System.out.printf("%-5s %s%n", same ? "ok" : "DIFF", mode.length > 0 ? String.join(" ", mode) : "(no flags)");
+        }
+
+        System.out.printf("%d of %d modes match %s%n", modes.size() - failures, modes.size(),
+                args.length > 3 ? golden : "a run without flags");
+
+        try (var files = Files.list(workDir)) {
+            for (Path file : (Iterable<Path>) files::iterator) Files.delete(file);
+        }
+        Files.delete(workDir);
+        if (failures > 0) System.exit(1);
+    }
+
+    // Whether a mode picks the same path as the original program when several are equally fast
+    private static boolean keepsTies(String[] mode) {
+        List<String> flags = Arrays.asList(mode);
+        for (String flag : flags) {
+            for (String tieBreaking : TIE_BREAKING) {
+                if (flag.startsWith(tieBreaking)) return false;
+            }
+            // Hierarchical paths keep the original choice only when the exact search checks them
+            if (flag.startsWith("--hpa=") && !flags.contains("--hpa-verify")) return false;
+        }
+        return true;
+    }
+
+    private static void run(String[] args, Path output, String... flags) throws IOException, InterruptedException {
+        List<String> mainArgs = new ArrayList<>(Arrays.asList(args[0], args[1], args[2], output.toString()));
+        mainArgs.addAll(Arrays.asList(flags));
+        runMain(mainArgs.toArray(new String[0]));
+    }
+
+    // Runs Main in a new JVM with the same class path
+    private static void runMain(String... mainArgs) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add("Main");
+        command.addAll(Arrays.asList(mainArgs));
+
+        Process process = new ProcessBuilder(command).redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD).start();
+        if (process.waitFor() != 0) {
+            throw new IllegalStateException("Main failed: " + String.join(" ", mainArgs));
+        }
+    }
+}
@@ -0,0 +1,211 @@
+/**
+ * Map indexed by cell id (x * height + y). The per-cell state is kept in tiles of
+ * TILE_SIZE consecutive cells, allocated when the first cell in them is given a type, so a
+ * sparse map only pays for the tiles that hold cells. A cell's tile is cell >>> TILE_BITS.
+ * Both the cell states and the travel times are on the heap or off it, by --storage.
+ * Travel times are kept once per edge: a cell holds the times towards x + 1 and y + 1,
+ * the other two directions are read from the neighbouring cell.
+ */
+class Grid {
+    // Type of cells that are not listed in the land file
+    static final int ABSENT = -1;
+
+    // Neighbour offsets in search order: x + 1, y + 1, x - 1, y - 1
+    static final int[][] DIRECTIONS = {{1, 0}, {0, 1}, {-1, 0}, {0, -1}};
+
+    static final int TILE_BITS = 12;
+    static final int TILE_SIZE = 1 << TILE_BITS;
+    static final int TILE_MASK = TILE_SIZE - 1;
+
+    final int width;
+    final int height;
+    private final int cellCount;
+
+    // Types and revealed flags, which each mission changes on its own copy
+    private final CellStates states;
+
+    // Travel times towards x + 1 and y + 1, 0 if there is no edge; shared between copies
+    final TravelTimes times;
+
+    // Smallest positive travel time, used by the A* heuristic
+    double minTravelTime;
+
+    Grid(int width, int height) {
+        this(width, height, TravelTimes.allocate(Functions.storageKind, width * height));
+    }
+
+    Grid(int width, int height, TravelTimes times) {
+        this.width = width;
+        this.height = height;
+        this.times = times;
+
+        cellCount = width * height;
+        states = CellStates.allocate(Functions.storageKind, cellCount);
+    }
+
+    /**
+     * Copies a map for a separate mission: the travel times are shared, the types and
+     * revealed flags, which the mission changes, are copied (off the heap, tile by tile as
+     * either map first changes them).
+     */
+    Grid(Grid map) {
+        width = map.width;
+        height = map.height;
+        cellCount = map.cellCount;
+        states = map.states.copy();
+        times = map.times;
+        minTravelTime = map.minTravelTime;
+    }
+
+    static int tileCount(int cellCount) {
+        return (int) (((long) cellCount + TILE_MASK) >>> TILE_BITS);
+    }
+
+    int cellCount() {
+        return cellCount;
+    }
+
+    // Whether most tiles hold no cells
+    boolean isSparse() {
+        return (long) states.allocatedTiles() * 2 < tileCount(cellCount);
+    }
+
+    /**
+     * Bound on the length of a path: every cell of the allocated tiles once, and the start
+     * cell, which may not exist.
+     */
+    int maxPathLength() {
+        return (int) Math.min(cellCount, (long) states.allocatedTiles() << TILE_BITS) + 1;
+    }
+
+    int cellOf(int x, int y) {
+        return x * height + y;
+    }
+
+    int x(int cell) {
+        return cell / height;
+    }
+
+    int y(int cell) {
+        return cell % height;
+    }
+
+    boolean exists(int cell) {
+        return type(cell) != ABSENT;
+    }
+
+    int type(int cell) {
+        return states.type(cell);
+    }
+
+    // Sets the type of a cell, allocating its tile; cells of type 1 start out revealed
+    void setType(int cell, int cellType) {
+        states.setType(cell, cellType);
+    }
+
+    // Revealed status: 1 for revealed (impassable), 0 for hidden; 0 for cells that do not exist
+    byte revealed(int cell) {
+        return states.revealed(cell);
+    }
+
+    // Whether the cell is revealed impassable
+    boolean isBlocked(int cell) {
+        return revealed(cell) == 1;
+    }
+
+    // Whether the cell exists and is not revealed impassable, with one tile lookup
+    boolean isOpen(int cell) {
+        return states.isOpen(cell);
+    }
+
+    // Changes the revealed status of an existing cell
+    void setRevealed(int cell, byte value) {
+        states.setRevealed(cell, value);
+    }
+
+    // Whether the cell has been explicitly revealed during traversal
+    boolean isRevealed(int cell) {
+        return states.isRevealed(cell);
+    }
+
+    void markRevealed(int cell) {
+        states.markRevealed(cell);
+    }
+
+    /**
+     * Copies a tile of revealed statuses into the given array; a tile without cells is all 0.
+     */
+    void copyRevealedTile(int tileIndex, byte[] destination) {
+        states.copyRevealedTile(tileIndex, destination);
+    }
+
+    /**
+     * Restores the revealed statuses saved in a copy of this map (see Grid(Grid)), reusing
+     * the tiles this map already has.
+     */
+    void copyRevealedFrom(Grid map) {
+        states.copyRevealedFrom(map.states);
+    }
+
+    /**
+     * Returns the neighbouring cell in the given direction, or -1 if it is off the grid.
+     */
+    int neighbour(int cell, int direction) {
+        switch (direction) {
+            case 0:
+                return cell + height < cellCount ? cell + height : -1;
+            case 1:
+                return (cell + 1) % height != 0 ? cell + 1 : -1;
+            case 2:
+                return cell >= height ? cell - height : -1;
+            default:
+                return cell % height != 0 ? cell - 1 : -1;
+        }
+    }
+
+    /**
+     * Travel time from a cell to its neighbour in the given direction (0 if there is no edge).
+     */
+    double travelTime(int cell, int direction) {
+        switch (direction) {
+            case 0:
+                return times.xPlus(cell);
+            case 1:
+                return times.yPlus(cell);
+            case 2:
+                return times.xPlus(cell - height);
+            default:
+                return times.yPlus(cell - 1);
+        }
+    }
+
+    /**
+     * Stores the travel time of an edge between two adjacent cells; other pairs are ignored.
+     */
+    void setTravelTime(int from, int to, double travelTime) {
+        int low = Math.min(from, to);
+        int high = Math.max(from, to);
+        if (high - low == height) {
+            times.setXPlus(low, travelTime);
+        } else if (high - low == 1 && high % height != 0) {
+            times.setYPlus(low, travelTime);
+        }
+    }
+
+    /**
+     * Returns the travel time between two adjacent cells.
+     */
+    double edgeTime(int from, int to) {
+        for (int direction = 0; direction < 4; direction++) {
+            if (neighbour(from, direction) == to) return travelTime(from, direction);
+        }
+        throw new IllegalArgumentException("Cells are not adjacent: " + encodeMap(from, to));
+    }
+
+    /**
+     * Encodes two cells as a string identifier for map edges.
+     */
+    String encodeMap(int cell1, int cell2) {
+        return x(cell1) + "-" + y(cell1) + "," + x(cell2) + "-" + y(cell2);
+    }
+}
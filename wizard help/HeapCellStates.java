@@ -0,0 +1,106 @@
+/**
+ * Cell types and revealed flags on the Java heap, one array per tile and state. A copy
+ * copies every allocated tile.
+ */
+class HeapCellStates implements CellStates {
+    // Per tile, null until a cell in the tile exists. Types are stored minus ABSENT, so a new
+    // tile reads as all absent without being filled, even through a reference published by
+    // another parsing thread
+    private final int[][] typeTiles;
+    private final byte[][] revealedTiles;       // 1 for revealed (impassable), 0 for hidden
+    private final boolean[][] isRevealedTiles;  // Explicitly revealed during traversal
+    private int allocatedTiles;
+
+    HeapCellStates(int cellCount) {
+        int tileCount = Grid.tileCount(cellCount);
+        typeTiles = new int[tileCount][];
+        revealedTiles = new byte[tileCount][];
+        isRevealedTiles = new boolean[tileCount][];
+    }
+
+    private HeapCellStates(HeapCellStates states) {
+        typeTiles = new int[states.typeTiles.length][];
+        revealedTiles = new byte[typeTiles.length][];
+        isRevealedTiles = new boolean[typeTiles.length][];
+        for (int tile = 0; tile < typeTiles.length; tile++) {
+            if (states.typeTiles[tile] == null) continue;
+            typeTiles[tile] = states.typeTiles[tile].clone();
+            revealedTiles[tile] = states.revealedTiles[tile].clone();
+            isRevealedTiles[tile] = states.isRevealedTiles[tile].clone();
+        }
+        allocatedTiles = states.allocatedTiles;
+    }
+
+    public CellStates copy() {
+        return new HeapCellStates(this);
+    }
+
+    public int allocatedTiles() {
+        return allocatedTiles;
+    }
+
+    public int type(int cell) {
+        int[] tile = typeTiles[cell >>> Grid.TILE_BITS];
+        return tile != null ? tile[cell & Grid.TILE_MASK] + Grid.ABSENT : Grid.ABSENT;
+    }
+
+    public void setType(int cell, int cellType) {
+        int tileIndex = cell >>> Grid.TILE_BITS;
+        int[] tile = typeTiles[tileIndex];
+        byte[] revealedTile = revealedTiles[tileIndex];
+        if (tile == null || revealedTile == null) {
+            allocateTile(tileIndex);
+            tile = typeTiles[tileIndex];
+            revealedTile = revealedTiles[tileIndex];
+        }
+        tile[cell & Grid.TILE_MASK] = cellType - Grid.ABSENT;
+        revealedTile[cell & Grid.TILE_MASK] = (byte) (cellType == 1 ? 1 : 0);
+    }
+
+    // Parsing threads can reach the same tile at once, so it is created under the lock
+    private synchronized void allocateTile(int tileIndex) {
+        if (typeTiles[tileIndex] != null) return;
+        revealedTiles[tileIndex] = new byte[Grid.TILE_SIZE];
+        isRevealedTiles[tileIndex] = new boolean[Grid.TILE_SIZE];
+        typeTiles[tileIndex] = new int[Grid.TILE_SIZE];
+        allocatedTiles++;
+    }
+
+    public byte revealed(int cell) {
+        byte[] tile = revealedTiles[cell >>> Grid.TILE_BITS];
+        return tile != null ? tile[cell & Grid.TILE_MASK] : 0;
+    }
+
+    public boolean isOpen(int cell) {
+        int tileIndex = cell >>> Grid.TILE_BITS;
+        int[] tile = typeTiles[tileIndex];
+        return tile != null && tile[cell & Grid.TILE_MASK] != 0 && revealedTiles[tileIndex][cell & Grid.TILE_MASK] != 1;
+    }
+
+    public void setRevealed(int cell, byte value) {
+        revealedTiles[cell >>> Grid.TILE_BITS][cell & Grid.TILE_MASK] = value;
+    }
+
+    public boolean isRevealed(int cell) {
+        boolean[] tile = isRevealedTiles[cell >>> Grid.TILE_BITS];
+        return tile != null && tile[cell & Grid.TILE_MASK];
+    }
+
+    public void markRevealed(int cell) {
+        isRevealedTiles[cell >>> Grid.TILE_BITS][cell & Grid.TILE_MASK] = true;
+    }
+
+    public void copyRevealedTile(int tileIndex, byte[] destination) {
+        byte[] tile = revealedTiles[tileIndex];
+        if (tile != null) System.arraycopy(tile, 0, destination, 0, Grid.TILE_SIZE);
+    }
+
+    public void copyRevealedFrom(CellStates states) {
+        HeapCellStates saved = (HeapCellStates) states;
+        for (int tile = 0; tile < typeTiles.length; tile++) {
+            if (saved.revealedTiles[tile] == null) continue;
+            System.arraycopy(saved.revealedTiles[tile], 0, revealedTiles[tile], 0, Grid.TILE_SIZE);
+            System.arraycopy(saved.isRevealedTiles[tile], 0, isRevealedTiles[tile], 0, Grid.TILE_SIZE);
+        }
+    }
+}
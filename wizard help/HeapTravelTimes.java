@@ -0,0 +1,46 @@
+/**
+ * Travel times on the Java heap, in pages of Grid.TILE_SIZE cells. A page is allocated by
+ * the first edge set in it, so the empty parts of a sparse map cost nothing and read as 0.
+ */
+class HeapTravelTimes implements TravelTimes {
+    private final double[][] xPlus;
+    private final double[][] yPlus;
+
+    HeapTravelTimes(int cellCount) {
+        xPlus = new double[Grid.tileCount(cellCount)][];
+        yPlus = new double[xPlus.length][];
+    }
+
+    public double xPlus(int cell) {
+        double[] page = xPlus[cell >>> Grid.TILE_BITS];
+        return page != null ? page[cell & Grid.TILE_MASK] : 0;
+    }
+
+    public double yPlus(int cell) {
+        double[] page = yPlus[cell >>> Grid.TILE_BITS];
+        return page != null ? page[cell & Grid.TILE_MASK] : 0;
+    }
+
+    public void setXPlus(int cell, double time) {
+        set(xPlus, cell, time);
+    }
+
+    public void setYPlus(int cell, double time) {
+        set(yPlus, cell, time);
+    }
+
+    private void set(double[][] pages, int cell, double time) {
+        double[] page = pages[cell >>> Grid.TILE_BITS];
+        if (page == null) {
+            if (time == 0) return; // Already reads as 0
+            page = allocatePage(pages, cell >>> Grid.TILE_BITS);
+        }
+        page[cell & Grid.TILE_MASK] = time;
+    }
+
+    // Parsing threads can reach the same page at once, so it is created under the lock
+    private synchronized double[] allocatePage(double[][] pages, int index) {
+        if (pages[index] == null) pages[index] = new double[Grid.TILE_SIZE];
+        return pages[index];
+    }
+}
@@ -0,0 +1,290 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Scores all of the wizard's help options from two distance fields on the current map:
+ * one from the current objective and one towards the next objective. An option only
+ * opens the revealed cells of its type, so a path crossing one of them costs the arrival
+ * time at that cell plus the time from it to the target. Options whose best path might
+ * cross several opened cells fall back to repairing the first field from the opened cells,
+ * which only explores cells that get faster and stops once it cannot beat the best option.
+ */
+class HelpOptionScorer {
+    // Returned when the options have to be evaluated one by one on the map instead
+    static final int NOT_SCORED = Integer.MIN_VALUE;
+
+    private static final double INF = Double.MAX_VALUE;
+
+    // Relative slack on lower bounds, which are summed in a different order than path times
+    private static final double BOUND_SLACK = 1e-9;
+
+    private final Grid grid;
+    private final TypeIndex typeIndex;
+    private final SearchQueue queue;
+
+    // Distance from the current objective
+    private final double[] fromCurrent;
+
+    // Distance to the next objective and the next cell on that path
+    private final double[] toNext;
+    private final int[] toNextChild;
+
+    private final boolean[] settled;
+
+    // Distances from the current objective that improve with one type opened
+    private final double[] repaired;
+    private final boolean[] repairSettled;
+    private int[] touched = new int[64];
+    private int touchedCount = 0;
+
+    HelpOptionScorer(Grid grid, TypeIndex typeIndex, String queueKind) {
+        this.grid = grid;
+        this.typeIndex = typeIndex;
+        this.queue = Functions.newQueue(queueKind, grid.cellCount());
+
+        int cellCount = grid.cellCount();
+        fromCurrent = new double[cellCount];
+        toNext = new double[cellCount];
+        toNextChild = new int[cellCount];
+        settled = new boolean[cellCount];
+        repaired = new double[cellCount];
+        repairSettled = new boolean[cellCount];
+        Arrays.fill(repaired, INF);
+    }
+
+    /**
+     * Chooses the option the serial evaluation would choose, or returns NOT_SCORED when
+     * the options change the map for each other or the next objective is unreachable.
+     */
+    int chooseOption(ArrayList<Integer> options, int current, int nextObjective) {
+        // revertPassable leaves cells that were revealed but not explicitly revealed passable,
+        // which changes the map for the later options
+        for (int type : options) {
+            int[] cells = typeIndex.cells(type);
+            int count = typeIndex.count(type);
+            for (int i = 0; i < count; i++) {
+                if (grid.isBlocked(cells[i]) && !grid.isRevealed(cells[i])) return NOT_SCORED;
+            }
+        }
+        if (nextObjective == -1) return -1; // Every option would cost Double.MAX_VALUE
+
+        computeFromCurrent(current);
+        double baseTime = fromCurrent[nextObjective];
+        if (baseTime == INF) return NOT_SCORED; // Unreachable paths are timed as 0
+        computeToNext(nextObjective);
+
+        int bestOption = -1;
+        double minTotalTime = INF;
+        for (int type : options) {
+            double totalTime = scoreOption(type, current, nextObjective, baseTime, minTotalTime);
+            if (totalTime < minTotalTime) {
+                minTotalTime = totalTime;
+                bestOption = type;
+            }
+        }
+        return bestOption;
+    }
+
+    // Path time with the given type made passable, or INF if it cannot beat the bound
+    private double scoreOption(int type, int current, int nextObjective, double baseTime, double bound) {
+        int[] cells = typeIndex.cells(type);
+        int count = typeIndex.count(type);
+
+        double minArrival = INF;
+        double minDeparture = INF;
+        double bestCrossing = INF;
+        int crossingCell = -1;
+        for (int i = 0; i < count; i++) {
+            int cell = cells[i];
+            if (!grid.isBlocked(cell) || cell == current) continue; // Opening it changes nothing
+
+            double arrival = arrivalTime(cell);
+            double departure = toNext[cell];
+            minArrival = Math.min(minArrival, arrival);
+            minDeparture = Math.min(minDeparture, departure);
+            if (arrival != INF && departure != INF && arrival + departure < bestCrossing) {
+                bestCrossing = arrival + departure;
+                crossingCell = cell;
+            }
+        }
+
+        // Any path through opened cells costs at least the cheapest arrival at one of them
+        // plus the cheapest departure from one of them
+        double crossingLowerBound = (minArrival == INF || minDeparture == INF)
+                ? INF : (minArrival + minDeparture) * (1 - BOUND_SLACK);
+        if (Math.min(baseTime, crossingLowerBound) >= bound) return INF;
+
+        double bestTime = baseTime;
+        if (bestCrossing < baseTime) {
+            bestTime = Math.min(bestTime, crossingTime(crossingCell, current));
+        }
+        if (bestTime <= crossingLowerBound) return bestTime;
+
+        // A path crossing several opened cells might be faster
+        return Math.min(bestTime, repairedTime(type, current, nextObjective, Math.min(bound, bestTime)));
+    }
+
+    // Lowers the distances from the current objective with one type opened, starting at the
+    // opened cells; returns the new time to the next objective if it is below the bound
+    private double repairedTime(int type, int current, int nextObjective, double bound) {
+        int[] cells = typeIndex.cells(type);
+        int count = typeIndex.count(type);
+        queue.clear();
+        long settledCount = 0;
+        double result = INF;
+
+        for (int i = 0; i < count; i++) {
+            int cell = cells[i];
+            if (!grid.isBlocked(cell) || cell == current) continue;
+
+            double arrival = arrivalTime(cell);
+            if (arrival < bound) improve(cell, arrival, nextObjective);
+        }
+
+        while (!queue.isEmpty()) {
+            int cell = queue.extractMin();
+            if (repairSettled[cell]) continue;
+            repairSettled[cell] = true;
+            settledCount++;
+
+            // Every remaining improvement is at least as slow as the bound
+            if (repaired[cell] + heuristic(cell, nextObjective) >= bound) break;
+            if (cell == nextObjective) {
+                result = repaired[cell];
+                break;
+            }
+
+            for (int direction = 0; direction < 4; direction++) {
+                int neighbour = grid.neighbour(cell, direction);
+                if (neighbour == -1 || !grid.exists(neighbour) || repairSettled[neighbour]) continue;
+                if (grid.isBlocked(neighbour) && grid.type(neighbour) != type) continue;
+
+                double travelTime = grid.travelTime(cell, direction);
+                double known = repaired[neighbour] != INF ? repaired[neighbour] : fromCurrent[neighbour];
+                if (travelTime > 0 && repaired[cell] + travelTime < known) {
+                    improve(neighbour, repaired[cell] + travelTime, nextObjective);
+                }
+            }
+        }
+
+        // Leave the scratch clean for the next option
+        for (int i = 0; i < touchedCount; i++) {
+            repaired[touched[i]] = INF;
+            repairSettled[touched[i]] = false;
+        }
+        touchedCount = 0;
+        Functions.nodesSettled.add(settledCount);
+        return result;
+    }
+
+    private void improve(int cell, double time, int nextObjective) {
+        if (repaired[cell] == INF) {
+            if (touchedCount == touched.length) touched = Arrays.copyOf(touched, touchedCount * 2);
+            touched[touchedCount++] = cell;
+        }
+        repaired[cell] = time;
+        queue.insert(cell, time + heuristic(cell, nextObjective));
+    }
+
+    // Lower bound on the travel time between two cells, as in PathSearch
+    private double heuristic(int cell, int target) {
+        return grid.minTravelTime * (Math.abs(grid.x(cell) - grid.x(target)) + Math.abs(grid.y(cell) - grid.y(target)));
+    }
+
+    // Earliest arrival at a blocked cell from a neighbour reached on the current map
+    private double arrivalTime(int cell) {
+        double best = INF;
+        for (int direction = 0; direction < 4; direction++) {
+            int neighbour = grid.neighbour(cell, direction);
+            if (neighbour == -1 || fromCurrent[neighbour] == INF) continue;
+
+            double travelTime = grid.travelTime(cell, direction);
+            if (travelTime > 0) best = Math.min(best, fromCurrent[neighbour] + travelTime);
+        }
+        return best;
+    }
+
+    // Time of the path through one opened cell, summed from the start like calculatePathTime
+    private double crossingTime(int cell, int current) {
+        int entry = -1;
+        double arrival = INF;
+        for (int direction = 0; direction < 4; direction++) {
+            int neighbour = grid.neighbour(cell, direction);
+            if (neighbour == -1 || fromCurrent[neighbour] == INF) continue;
+
+            double travelTime = grid.travelTime(cell, direction);
+            if (travelTime > 0 && fromCurrent[neighbour] + travelTime < arrival) {
+                arrival = fromCurrent[neighbour] + travelTime;
+                entry = neighbour;
+            }
+        }
+
+        double totalTime = fromCurrent[entry] + grid.edgeTime(entry, cell);
+        for (int from = cell; toNextChild[from] != -1; from = toNextChild[from]) {
+            totalTime += grid.edgeTime(from, toNextChild[from]);
+        }
+        return totalTime;
+    }
+
+    // Dijkstra from the current objective, with the same rules as PathSearch.dijkstra
+    private void computeFromCurrent(int current) {
+        Arrays.fill(fromCurrent, INF);
+        Arrays.fill(settled, false);
+        queue.clear();
+        long settledCount = 0;
+
+        fromCurrent[current] = 0;
+        queue.insert(current, 0);
+        while (!queue.isEmpty()) {
+            int cell = queue.extractMin();
+            if (settled[cell]) continue;
+            settled[cell] = true;
+            settledCount++;
+
+            for (int direction = 0; direction < 4; direction++) {
+                int neighbour = grid.neighbour(cell, direction);
+                if (neighbour == -1 || !grid.isOpen(neighbour) || settled[neighbour]) continue;
+
+                double travelTime = grid.travelTime(cell, direction);
+                if (travelTime > 0 && fromCurrent[cell] + travelTime < fromCurrent[neighbour]) {
+                    fromCurrent[neighbour] = fromCurrent[cell] + travelTime;
+                    queue.insert(neighbour, fromCurrent[neighbour]);
+                }
+            }
+        }
+        Functions.nodesSettled.add(settledCount);
+    }
+
+    // Dijkstra backwards from the next objective; a path may start on a blocked cell,
+    // so blocked cells get a distance but are never passed through
+    private void computeToNext(int nextObjective) {
+        Arrays.fill(toNext, INF);
+        Arrays.fill(toNextChild, -1);
+        Arrays.fill(settled, false);
+        queue.clear();
+        long settledCount = 0;
+
+        toNext[nextObjective] = 0;
+        queue.insert(nextObjective, 0);
+        while (!queue.isEmpty()) {
+            int cell = queue.extractMin();
+            if (settled[cell]) continue;
+            settled[cell] = true;
+            settledCount++;
+            if (grid.isBlocked(cell)) continue; // Cannot be moved into
+
+            for (int direction = 0; direction < 4; direction++) {
+                int neighbour = grid.neighbour(cell, direction);
+                if (neighbour == -1 || !grid.exists(neighbour) || settled[neighbour]) continue;
+
+                double travelTime = grid.travelTime(cell, direction);
+                if (travelTime > 0 && travelTime + toNext[cell] < toNext[neighbour]) {
+                    toNext[neighbour] = travelTime + toNext[cell];
+                    toNextChild[neighbour] = cell;
+                    queue.insert(neighbour, toNext[neighbour]);
+                }
+            }
+        }
+        Functions.nodesSettled.add(settledCount);
+    }
+}
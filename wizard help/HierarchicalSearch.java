@@ -0,0 +1,424 @@
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hierarchical path search (HPA*). The map is cut into square clusters, and every run of
+ * crossable cells along a border between two clusters gets transitions: one in the middle of
+ * a short run, or a few spread from end to end of a long one. Travel times between the
+ * transitions of a cluster are cached, so a query only searches the graph of transitions
+ * and then fills in the cells of the clusters on the route.
+ * A cell that changes passability only invalidates its own cluster, and the neighbouring one
+ * when it lies on their border.
+ *
+ * Paths are the fastest through the transitions, which is not always the fastest path on the
+ * map; with verification the exact search is run as well and its path wins when they differ.
+ */
+class HierarchicalSearch {
+    private static final double INF = Double.MAX_VALUE;
+
+    // Runs of crossable border cells at least this long get a transition at each end and
+    // every TRANSITION_SPACING cells in between; shorter runs get one in the middle
+    private static final int LONG_RUN = 6;
+    private static final int TRANSITION_SPACING = 4;
+
+    // Queries answered so far and, when verifying, answers that differed from the exact search
+    static final LongAdder queries = new LongAdder();
+    static final LongAdder mismatches = new LongAdder();
+
+    private final Grid grid;
+    private final int clusterSize;
+    private final int clustersX;
+    private final int clustersY;
+
+    // Transitions across the border of each cluster towards x + 1 and y + 1,
+    // stored as {inside cell, outside cell} pairs
+    private final int[][] bordersXPlus;
+    private final int[][] bordersYPlus;
+
+    // Per cluster: transition cells, travel times between them (row-major, INF if unreachable)
+    // and the edges leaving the cluster from them
+    private final int[][] entrances;
+    private final double[][] entranceTimes;
+    private final int[][] exitFrom; // Index of the entrance the edge leaves from
+    private final int[][] exitTo;   // Cell in the neighbouring cluster
+    private final boolean[] dirty;
+
+    // Index of a cell in its cluster's entrance list, -1 for other cells
+    private final int[] entranceIndex;
+
+    // Search inside one cluster, indexed by the cell's position in the cluster
+    private final double[] localDistance;
+    private final int[] localParent;
+    private final boolean[] localSettled;
+    private final CustomHeap localQueue = new CustomHeap();
+
+    // Search over the transitions, indexed by cell and cleared through the touched list
+    private final double[] abstractDistance;
+    private final int[] abstractParent;
+    private final boolean[] abstractSettled;
+    private int[] touched = new int[64];
+    private int touchedCount = 0;
+    private final CustomHeap abstractQueue = new CustomHeap();
+
+    private long settled;
+
+    HierarchicalSearch(Grid grid, int clusterSize) {
+        if (clusterSize < 2) throw new IllegalArgumentException("Cluster size must be at least 2: " + clusterSize);
+        this.grid = grid;
+        this.clusterSize = clusterSize;
+        clustersX = (grid.width + clusterSize - 1) / clusterSize;
+        clustersY = (grid.height + clusterSize - 1) / clusterSize;
+
+        int clusterCount = clustersX * clustersY;
+        bordersXPlus = new int[clusterCount][];
+        bordersYPlus = new int[clusterCount][];
+        entrances = new int[clusterCount][0];
+        entranceTimes = new double[clusterCount][];
+        exitFrom = new int[clusterCount][];
+        exitTo = new int[clusterCount][];
+        dirty = new boolean[clusterCount];
+        Arrays.fill(dirty, true);
+
+        entranceIndex = new int[grid.cellCount()];
+        Arrays.fill(entranceIndex, -1);
+
+        localDistance = new double[clusterSize * clusterSize];
+        localParent = new int[clusterSize * clusterSize];
+        localSettled = new boolean[clusterSize * clusterSize];
+
+        abstractDistance = new double[grid.cellCount()];
+        abstractParent = new int[grid.cellCount()];
+        abstractSettled = new boolean[grid.cellCount()];
+        Arrays.fill(abstractDistance, INF);
+    }
+
+    /**
+     * Notifies the search that the passability of the first count given cells has changed.
+     */
+    void cellsChanged(int[] cells, int count) {
+        for (int i = 0; i < count; i++) {
+            int x = grid.x(cells[i]);
+            int y = grid.y(cells[i]);
+            int cx = x / clusterSize;
+            int cy = y / clusterSize;
+            dirty[cx * clustersY + cy] = true;
+
+            // Border cells also decide the transitions of the cluster on the other side
+            if (x % clusterSize == 0 && cx > 0) dirty[(cx - 1) * clustersY + cy] = true;
+            if (x % clusterSize == clusterSize - 1 && cx + 1 < clustersX) dirty[(cx + 1) * clustersY + cy] = true;
+            if (y % clusterSize == 0 && cy > 0) dirty[cx * clustersY + cy - 1] = true;
+            if (y % clusterSize == clusterSize - 1 && cy + 1 < clustersY) dirty[cx * clustersY + cy + 1] = true;
+        }
+    }
+
+    void cellsChanged(int[] cells) {
+        cellsChanged(cells, cells.length);
+    }
+
+    /**
+     * Finds a path between two cells through the cluster transitions. Unreachable targets give
+     * the same result as the exact search.
+     */
+    int[] findPath(int start, int target) {
+        queries.increment();
+        if (target == -1) return new int[0];
+        if (start == target) return new int[]{start};
+        if (!grid.isOpen(target)) return new int[]{target};
+
+        settled = 0;
+        refresh();
+
+        // Travel times from the entrances of the target's cluster to the target; moves are
+        // symmetric, and the entrances and the target can both be entered
+        int targetCluster = clusterOf(target);
+        localSearch(targetCluster, target, -1);
+        int[] targetEntrances = entrances[targetCluster];
+        double[] toTarget = new double[targetEntrances.length];
+        for (int i = 0; i < targetEntrances.length; i++) {
+            toTarget[i] = localDistance[localIndex(targetEntrances[i])];
+        }
+
+        // Travel times from the start within its cluster seed the search over transitions
+        int startCluster = clusterOf(start);
+        localSearch(startCluster, start, -1);
+        double bestTime = startCluster == targetCluster ? localDistance[localIndex(target)] : INF;
+        int bestLast = -1; // Last transition before the target, -1 for the path inside the cluster
+
+        abstractQueue.clear();
+        for (int entrance : entrances[startCluster]) {
+            double time = localDistance[localIndex(entrance)];
+            if (time < INF) relax(entrance, time, -1);
+        }
+
+        while (!abstractQueue.isEmpty()) {
+            int cell = abstractQueue.extractMin();
+            if (abstractSettled[cell]) continue;
+            if (abstractDistance[cell] >= bestTime) break;
+            abstractSettled[cell] = true;
+            settled++;
+
+            int cluster = clusterOf(cell);
+            int index = entranceIndex[cell];
+            if (cluster == targetCluster && toTarget[index] < INF && abstractDistance[cell] + toTarget[index] < bestTime) {
+                bestTime = abstractDistance[cell] + toTarget[index];
+                bestLast = cell;
+            }
+
+            int[] clusterEntrances = entrances[cluster];
+            double[] times = entranceTimes[cluster];
+            int row = index * clusterEntrances.length;
+            for (int other = 0; other < clusterEntrances.length; other++) {
+                if (other != index && times[row + other] < INF) {
+                    relax(clusterEntrances[other], abstractDistance[cell] + times[row + other], cell);
+                }
+            }
+            int[] from = exitFrom[cluster];
+            for (int exit = 0; exit < from.length; exit++) {
+                if (from[exit] == index) {
+                    int next = exitTo[cluster][exit];
+                    relax(next, abstractDistance[cell] + grid.edgeTime(cell, next), cell);
+                }
+            }
+        }
+
+        int[] path;
+        if (bestTime == INF) {
+            path = new int[]{target};
+        } else if (bestLast == -1) {
+            path = localPath(startCluster, start, target);
+        } else {
+            path = refine(start, target, bestLast);
+        }
+        clearAbstractSearch();
+        Functions.nodesSettled.add(settled);
+        return path;
+    }
+
+    // Expands the route through the transitions into cells
+    private int[] refine(int start, int target, int last) {
+        int routeLength = 0;
+        for (int cell = last; cell != -1; cell = abstractParent[cell]) routeLength++;
+        int[] route = new int[routeLength];
+        for (int cell = last; cell != -1; cell = abstractParent[cell]) route[--routeLength] = cell;
+
+        int[] path = localPath(clusterOf(start), start, route[0]);
+        int length = path.length;
+        for (int i = 1; i < route.length; i++) {
+            int cluster = clusterOf(route[i]);
+            if (cluster != clusterOf(route[i - 1])) {
+                // Edge between two clusters
+                if (length == path.length) path = Arrays.copyOf(path, length * 2);
+                path[length++] = route[i];
+            } else {
+                int[] segment = localPath(cluster, route[i - 1], route[i]);
+                path = append(path, length, segment);
+                length += segment.length - 1;
+            }
+        }
+        int[] segment = localPath(clusterOf(target), route[route.length - 1], target);
+        path = append(path, length, segment);
+        length += segment.length - 1;
+        return Arrays.copyOf(path, length);
+    }
+
+    // Appends a segment without its first cell, which is already the last cell of the path
+    private static int[] append(int[] path, int length, int[] segment) {
+        if (length + segment.length - 1 > path.length) {
+            path = Arrays.copyOf(path, Math.max(path.length * 2, length + segment.length));
+        }
+        System.arraycopy(segment, 1, path, length, segment.length - 1);
+        return path;
+    }
+
+    private void relax(int cell, double time, int parent) {
+        if (time >= abstractDistance[cell]) return;
+        if (abstractDistance[cell] == INF) {
+            if (touchedCount == touched.length) touched = Arrays.copyOf(touched, touchedCount * 2);
+            touched[touchedCount++] = cell;
+        }
+        abstractDistance[cell] = time;
+        abstractParent[cell] = parent;
+        abstractQueue.insert(cell, time);
+    }
+
+    private void clearAbstractSearch() {
+        for (int i = 0; i < touchedCount; i++) {
+            abstractDistance[touched[i]] = INF;
+            abstractSettled[touched[i]] = false;
+        }
+        touchedCount = 0;
+    }
+
+    // Rebuilds the transitions and cached travel times of the invalidated clusters
+    private void refresh() {
+        for (int cluster = 0; cluster < dirty.length; cluster++) {
+            if (!dirty[cluster]) continue;
+            int cx = cluster / clustersY;
+            int cy = cluster % clustersY;
+            bordersXPlus[cluster] = findTransitions(cx, cy, true);
+            bordersYPlus[cluster] = findTransitions(cx, cy, false);
+            if (cx > 0) bordersXPlus[cluster - clustersY] = findTransitions(cx - 1, cy, true);
+            if (cy > 0) bordersYPlus[cluster - 1] = findTransitions(cx, cy - 1, false);
+        }
+        for (int cluster = 0; cluster < dirty.length; cluster++) {
+            if (!dirty[cluster]) continue;
+            rebuildCluster(cluster);
+            dirty[cluster] = false;
+        }
+    }
+
+    // Transitions across the border of a cluster towards x + 1 (alongX) or y + 1
+    private int[] findTransitions(int cx, int cy, boolean alongX) {
+        int[] pairs = new int[0];
+        int count = 0;
+        if (alongX ? cx + 1 >= clustersX : cy + 1 >= clustersY) return pairs;
+
+        int crossDirection = alongX ? 0 : 1;   // From the inside cell to the outside cell
+        int borderDirection = alongX ? 1 : 0;  // Along the border
+        int length = alongX ? Math.min(clusterSize, grid.height - cy * clusterSize)
+                : Math.min(clusterSize, grid.width - cx * clusterSize);
+        int runStart = -1;
+        int previousInside = -1;
+        for (int position = 0; position <= length; position++) {
+            int inside = -1;
+            boolean crossable = false;
+            if (position < length) {
+                inside = alongX ? grid.cellOf((cx + 1) * clusterSize - 1, cy * clusterSize + position)
+                        : grid.cellOf(cx * clusterSize + position, (cy + 1) * clusterSize - 1);
+                crossable = canMove(inside, crossDirection);
+            }
+
+            // A run also ends where its cells are not connected along the border on both sides
+            boolean continues = crossable && runStart != -1
+                    && canMove(previousInside, borderDirection)
+                    && canMove(grid.neighbour(previousInside, crossDirection), borderDirection);
+            if (runStart != -1 && !continues) {
+                int runEnd = position - 1;
+                int transitions = runEnd - runStart + 1 < LONG_RUN ? 1
+                        : (runEnd - runStart + TRANSITION_SPACING - 1) / TRANSITION_SPACING + 1;
+                for (int t = 0; t < transitions; t++) {
+                    int at = transitions == 1 ? (runStart + runEnd) / 2 : Math.min(runStart + t * TRANSITION_SPACING, runEnd);
+                    if (count + 2 > pairs.length) pairs = Arrays.copyOf(pairs, Math.max(8, pairs.length * 2));
+                    int cell = alongX ? grid.cellOf((cx + 1) * clusterSize - 1, cy * clusterSize + at)
+                            : grid.cellOf(cx * clusterSize + at, (cy + 1) * clusterSize - 1);
+                    pairs[count++] = cell;
+                    pairs[count++] = grid.neighbour(cell, crossDirection);
+                }
+                runStart = -1;
+            }
+            if (crossable && runStart == -1) runStart = position;
+            previousInside = inside;
+        }
+        return Arrays.copyOf(pairs, count);
+    }
+
+    // Whether the edge from an open cell to its neighbour can be used in both directions
+    private boolean canMove(int cell, int direction) {
+        if (cell == -1 || !grid.isOpen(cell)) return false;
+        int next = grid.neighbour(cell, direction);
+        return next != -1 && grid.isOpen(next) && grid.travelTime(cell, direction) > 0;
+    }
+
+    private void rebuildCluster(int cluster) {
+        for (int entrance : entrances[cluster]) entranceIndex[entrance] = -1;
+
+        int cx = cluster / clustersY;
+        int cy = cluster % clustersY;
+        int[][] borders = {
+                bordersXPlus[cluster], bordersYPlus[cluster],
+                cx > 0 ? bordersXPlus[cluster - clustersY] : new int[0],
+                cy > 0 ? bordersYPlus[cluster - 1] : new int[0]};
+
+        // Inside cells of this cluster's own borders, outside cells of the neighbours' borders
+        int[] cells = new int[16];
+        int count = 0;
+        int exits = 0;
+        for (int[] border : borders) exits += border.length / 2;
+        int[] from = new int[exits];
+        int[] to = new int[exits];
+        exits = 0;
+        for (int b = 0; b < borders.length; b++) {
+            int side = b < 2 ? 0 : 1;
+            for (int pair = 0; pair < borders[b].length; pair += 2) {
+                int cell = borders[b][pair + side];
+                if (entranceIndex[cell] == -1) {
+                    if (count == cells.length) cells = Arrays.copyOf(cells, count * 2);
+                    entranceIndex[cell] = count;
+                    cells[count++] = cell;
+                }
+                from[exits] = entranceIndex[cell];
+                to[exits++] = borders[b][pair + 1 - side];
+            }
+        }
+        cells = Arrays.copyOf(cells, count);
+
+        double[] times = new double[count * count];
+        for (int i = 0; i < count; i++) {
+            localSearch(cluster, cells[i], -1);
+            for (int j = 0; j < count; j++) {
+                times[i * count + j] = localDistance[localIndex(cells[j])];
+            }
+        }
+        entrances[cluster] = cells;
+        entranceTimes[cluster] = times;
+        exitFrom[cluster] = from;
+        exitTo[cluster] = to;
+    }
+
+    // Dijkstra restricted to one cluster; stops early once the target is settled (-1 for none)
+    private void localSearch(int cluster, int source, int target) {
+        int x0 = (cluster / clustersY) * clusterSize;
+        int y0 = (cluster % clustersY) * clusterSize;
+        int x1 = Math.min(x0 + clusterSize, grid.width);
+        int y1 = Math.min(y0 + clusterSize, grid.height);
+        Arrays.fill(localDistance, INF);
+        Arrays.fill(localParent, -1);
+        Arrays.fill(localSettled, false);
+        localQueue.clear();
+
+        localDistance[localIndex(source)] = 0;
+        localQueue.insert(source, 0);
+        while (!localQueue.isEmpty()) {
+            int cell = localQueue.extractMin();
+            int local = localIndex(cell);
+            if (localSettled[local]) continue;
+            localSettled[local] = true;
+            settled++;
+            if (cell == target) break;
+
+            for (int direction = 0; direction < 4; direction++) {
+                int next = grid.neighbour(cell, direction);
+                if (next == -1 || !grid.isOpen(next)) continue;
+                int x = grid.x(next);
+                int y = grid.y(next);
+                if (x < x0 || x >= x1 || y < y0 || y >= y1) continue;
+
+                double travelTime = grid.travelTime(cell, direction);
+                int nextLocal = localIndex(next);
+                if (travelTime > 0 && !localSettled[nextLocal] && localDistance[local] + travelTime < localDistance[nextLocal]) {
+                    localDistance[nextLocal] = localDistance[local] + travelTime;
+                    localParent[nextLocal] = cell;
+                    localQueue.insert(next, localDistance[nextLocal]);
+                }
+            }
+        }
+    }
+
+    // Fastest path between two cells of the same cluster without leaving it
+    private int[] localPath(int cluster, int from, int to) {
+        localSearch(cluster, from, to);
+        int length = 0;
+        for (int cell = to; cell != -1; cell = localParent[localIndex(cell)]) length++;
+        int[] path = new int[length];
+        for (int cell = to; cell != -1; cell = localParent[localIndex(cell)]) path[--length] = cell;
+        return path;
+    }
+
+    private int clusterOf(int cell) {
+        return (grid.x(cell) / clusterSize) * clustersY + grid.y(cell) / clusterSize;
+    }
+
+    private int localIndex(int cell) {
+        return (grid.x(cell) % clusterSize) * clusterSize + grid.y(cell) % clusterSize;
+    }
+}
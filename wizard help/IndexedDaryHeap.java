@@ -0,0 +1,109 @@
+import java.util.Arrays;
+
+/**
+ * Indexed d-ary min-heap over cell ids with true decrease-key.
+ * Every cell is in the heap at most once, so the heap never grows beyond the cell count.
+ */
+public class IndexedDaryHeap implements SearchQueue {
+    private final int arity;     // Number of children per heap node
+    private final double[] keys; // Priority of each heap element
+    private final int[] cells;   // Cell id of each heap element
+    private final int[] position; // Heap index of each cell, -1 if the cell is not in the heap
+    private int size;
+
+    // Constructor
+    public IndexedDaryHeap(int cellCount, int arity) {
+        this.arity = arity;
+        this.keys = new double[cellCount];
+        this.cells = new int[cellCount];
+        this.position = new int[cellCount];
+        Arrays.fill(position, -1);
+        this.size = 0;
+    }
+
+    // Remove all elements from the heap
+    @Override
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            position[cells[i]] = -1;
+        }
+        size = 0;
+    }
+
+    // Insert a cell, or lower its priority if it is already in the heap
+    @Override
+    public void insert(int cell, double key) {
+        int index = position[cell];
+        if (index == -1) {
+            index = size++;
+        } else if (key >= keys[index]) {
+            return; // Priority would not decrease
+        }
+        siftUp(index, cell, key);
+    }
+
+    // Remove and return the cell with the smallest priority
+    @Override
+    public int extractMin() {
+        if (isEmpty()) {
+            throw new IllegalStateException("Heap is empty");
+        }
+
+        int min = cells[0];
+        position[min] = -1;
+        size--;
+
+        if (size > 0) {
+            siftDown(0, cells[size], keys[size]); // Move the last element down from the root
+        }
+        return min;
+    }
+
+    // Check if the heap is empty
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    // Get the size of the heap
+    public int getSize() {
+        return size;
+    }
+
+    // Move an element up from the given index until its parent is not larger
+    private void siftUp(int index, int cell, double key) {
+        while (index > 0) {
+            int parentIndex = (index - 1) / arity;
+            if (keys[parentIndex] <= key) break;
+            place(index, cells[parentIndex], keys[parentIndex]);
+            index = parentIndex;
+        }
+        place(index, cell, key);
+    }
+
+    // Move an element down from the given index until no child is smaller
+    private void siftDown(int index, int cell, double key) {
+        while (true) {
+            int firstChild = arity * index + 1;
+            if (firstChild >= size) break;
+
+            // Find the smallest child
+            int lastChild = Math.min(firstChild + arity, size);
+            int smallest = firstChild;
+            for (int child = firstChild + 1; child < lastChild; child++) {
+                if (keys[child] < keys[smallest]) smallest = child;
+            }
+            if (keys[smallest] >= key) break;
+
+            place(index, cells[smallest], keys[smallest]);
+            index = smallest;
+        }
+        place(index, cell, key);
+    }
+
+    private void place(int index, int cell, double key) {
+        keys[index] = key;
+        cells[index] = cell;
+        position[cell] = index;
+    }
+}
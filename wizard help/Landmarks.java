@@ -0,0 +1,324 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.stream.IntStream;
+
+/**
+ * ALT preprocessing: exact travel times from a few landmark cells to every cell, giving
+ * A* the lower bound |d(L, t) - d(L, v)| on the time from v to t for each landmark L.
+ *
+ * The times are computed with every cell open except revealed type 1 cells. Revealing only
+ * closes cells and the wizard's help normally opens cells of types 2 and up, which were open
+ * here, so every later state of the map has a subset of these cells; removing cells cannot
+ * make paths faster, so the bounds stay admissible. Help that opens type 1 cells breaks
+ * this, which covers detects.
+ *
+ * Tables are stored cell-major, the times of all landmarks of a cell next to each other.
+ */
+class Landmarks {
+    private static final int MAGIC = 0x574c4d4b; // "WLMK"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 64;
+    private static final int CHECKSUM_OFFSET = 56;
+    private static final int SLICE_BYTES = 1 << 26;
+
+    final int count;
+    final int[] cells;           // Landmark cells
+    private final double[] table; // table[cell * count + i]: time from landmark i to cell
+    private final long[] open;    // Cells that were open for the tables, one bit each
+
+    // The tables belong to the grid as it is now
+    private Landmarks(Grid grid, int[] cells, double[] table) {
+        this.count = cells.length;
+        this.cells = cells;
+        this.table = table;
+        this.open = new long[(grid.cellCount() + 63) >>> 6];
+        for (int cell = 0; cell < grid.cellCount(); cell++) {
+            if (mayOpen(grid, cell)) open[cell >>> 6] |= 1L << cell;
+        }
+    }
+
+    /**
+     * Picks up to the given number of landmarks spread around the edge of the map and
+     * computes their tables in parallel.
+     */
+    static Landmarks compute(Grid grid, int count) {
+        int[] cells = pickLandmarks(grid, count);
+        int landmarkCount = cells.length;
+        if ((long) grid.cellCount() * landmarkCount > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Too many landmarks for a map of " + grid.cellCount() + " cells");
+        }
+        double[] table = new double[grid.cellCount() * landmarkCount];
+        IntStream.range(0, landmarkCount).parallel().forEach(i -> fillTimes(grid, cells[i], table, i, landmarkCount));
+        return new Landmarks(grid, cells, table);
+    }
+
+    /**
+     * Lower bound on the travel time from a cell to the target.
+     */
+    double lowerBound(int cell, int target) {
+        double bound = 0;
+        int cellRow = cell * count;
+        int targetRow = target * count;
+        for (int i = 0; i < count; i++) {
+            double fromLandmarkToCell = table[cellRow + i];
+            double fromLandmarkToTarget = table[targetRow + i];
+            if (fromLandmarkToCell == Double.MAX_VALUE || fromLandmarkToTarget == Double.MAX_VALUE) continue;
+            bound = Math.max(bound, Math.abs(fromLandmarkToTarget - fromLandmarkToCell));
+        }
+        return bound;
+    }
+
+    /**
+     * Whether opening the given cells keeps the bounds admissible: every one of them was
+     * open when the tables were computed.
+     */
+    boolean covers(int[] cellsToOpen, int length) {
+        for (int j = 0; j < length; j++) {
+            int cell = cellsToOpen[j];
+            if ((open[cell >>> 6] & (1L << cell)) == 0) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Lowers the tables after the given edges became faster, visiting only the cells that get
+     * closer to a landmark, so the bounds stay admissible. Slower edges and closed cells need
+     * nothing, since the tables may underestimate. The tables are shared by the missions of a
+     * run, which is fine as travel-time updates only run with a single mission.
+     *
+     * @param ends The cells at both ends of each edge, 2 * edgeCount entries.
+     */
+    void edgesFaster(Grid grid, int[] ends, int edgeCount) {
+        CustomHeap queue = new CustomHeap();
+        long settledCount = 0;
+        for (int i = 0; i < count; i++) {
+            for (int k = 0; k < 2 * edgeCount; k += 2) {
+                double travelTime = grid.edgeTime(ends[k], ends[k + 1]);
+                if (travelTime <= 0) continue;
+                lower(i, ends[k], ends[k + 1], travelTime, queue);
+                lower(i, ends[k + 1], ends[k], travelTime, queue);
+            }
+            while (!queue.isEmpty()) {
+                double key = queue.peekKey();
+                int current = queue.extractMin();
+                if (key > table[current * count + i]) continue; // Lowered again since
+                settledCount++;
+                for (int direction = 0; direction < 4; direction++) {
+                    int neighbor = grid.neighbour(current, direction);
+                    if (neighbor == -1) continue;
+                    double travelTime = grid.travelTime(current, direction);
+                    if (travelTime > 0) lower(i, current, neighbor, travelTime, queue);
+                }
+            }
+        }
+        Functions.nodesSettled.add(settledCount);
+    }
+
+    // Lowers the time from landmark i to a cell the tables treat as open, moving from a neighbour
+    private void lower(int i, int from, int to, double travelTime, CustomHeap queue) {
+        double fromTime = table[from * count + i];
+        if (fromTime == Double.MAX_VALUE || (open[to >>> 6] & (1L << to)) == 0) return;
+        if (fromTime + travelTime < table[to * count + i]) {
+            table[to * count + i] = fromTime + travelTime;
+            queue.insert(to, fromTime + travelTime);
+        }
+    }
+
+    // Whether the mission could ever pass through the cell
+    private static boolean mayOpen(Grid grid, int cell) {
+        return grid.exists(cell) && (grid.type(cell) != 1 || grid.revealed(cell) == 0);
+    }
+
+    // Open cells nearest to evenly spaced points on the edge of the map, duplicates dropped
+    private static int[] pickLandmarks(Grid grid, int count) {
+        int[] picked = new int[count];
+        int pickedCount = 0;
+        int perimeter = 2 * (grid.width + grid.height) - 4;
+        int centerX = grid.width / 2;
+        int centerY = grid.height / 2;
+        for (int i = 0; i < count; i++) {
+            int[] edge = edgePoint(grid, (int) ((long) i * perimeter / count));
+            // Walk from the edge point towards the center until an open cell is found
+            int steps = Math.max(Math.abs(centerX - edge[0]), Math.abs(centerY - edge[1]));
+            for (int step = 0; step <= steps; step++) {
+                int x = edge[0] + (steps == 0 ? 0 : (centerX - edge[0]) * step / steps);
+                int y = edge[1] + (steps == 0 ? 0 : (centerY - edge[1]) * step / steps);
+                int cell = grid.cellOf(x, y);
+                if (mayOpen(grid, cell)) {
+                    boolean duplicate = false;
+                    for (int j = 0; j < pickedCount; j++) duplicate |= picked[j] == cell;
+                    if (!duplicate) picked[pickedCount++] = cell;
+                    break;
+                }
+            }
+        }
+        return Arrays.copyOf(picked, pickedCount);
+    }
+
+    // Point at the given distance along the edge, clockwise from (0, 0)
+    private static int[] edgePoint(Grid grid, int position) {
+        int w = grid.width - 1;
+        int h = grid.height - 1;
+        if (position <= w) return new int[]{position, 0};
+        position -= w;
+        if (position <= h) return new int[]{w, position};
+        position -= h;
+        if (position <= w) return new int[]{w - position, h};
+        position -= w;
+        return new int[]{0, Math.max(h - position, 0)};
+    }
+
+    // Dijkstra from one landmark over every cell that may open, into column i of the table
+    private static void fillTimes(Grid grid, int landmark, double[] table, int i, int count) {
+        int cellCount = grid.cellCount();
+        double[] time = new double[cellCount];
+        boolean[] settled = new boolean[cellCount];
+        Arrays.fill(time, Double.MAX_VALUE);
+        CustomHeap queue = new CustomHeap();
+        time[landmark] = 0;
+        queue.insert(landmark, 0);
+
+        long settledCount = 0;
+        while (!queue.isEmpty()) {
+            int current = queue.extractMin();
+            if (settled[current]) continue;
+            settled[current] = true;
+            settledCount++;
+            for (int direction = 0; direction < 4; direction++) {
+                int neighbor = grid.neighbour(current, direction);
+                if (neighbor == -1 || settled[neighbor] || !mayOpen(grid, neighbor)) continue;
+                double travelTime = grid.travelTime(current, direction);
+                if (travelTime > 0 && time[current] + travelTime < time[neighbor]) {
+                    time[neighbor] = time[current] + travelTime;
+                    queue.insert(neighbor, time[neighbor]);
+                }
+            }
+        }
+        Functions.nodesSettled.add(settledCount);
+
+        for (int cell = 0; cell < cellCount; cell++) {
+            table[cell * count + i] = time[cell];
+        }
+    }
+
+    /**
+     * Loads the tables from a file written for the same land and travel-time files and
+     * landmark count, or computes them and writes the file.
+     */
+    static Landmarks loadOrCompute(Grid grid, int count, String landmarkFile, String landFile,
+                                   String travelTimeFile) throws IOException {
+        Landmarks landmarks = load(grid, count, landmarkFile, landFile, travelTimeFile);
+        if (landmarks != null) return landmarks;
+        landmarks = compute(grid, count);
+        landmarks.write(grid, count, landmarkFile, landFile, travelTimeFile);
+        return landmarks;
+    }
+
+    /**
+     * Writes the tables, recording the source files like MapSnapshot does.
+     * Layout: a 64-byte header (magic, version, width, height, requested and actual landmark
+     * count, the size and modification time of both source files, CRC32), then the landmark
+     * cells and the table, all little-endian. The checksum covers everything but itself.
+     */
+    void write(Grid grid, int requested, String landmarkFile, String landFile, String travelTimeFile) throws IOException {
+        ByteBuffer header = header(grid, requested, count, landFile, travelTimeFile);
+        CRC32 checksum = new CRC32();
+        checksum.update(header.array(), 0, CHECKSUM_OFFSET);
+
+        try (FileChannel channel = FileChannel.open(Paths.get(landmarkFile), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.position(HEADER_BYTES);
+            ByteBuffer buffer = ByteBuffer.allocateDirect(Math.max(SLICE_BYTES, 4 * count)).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.asIntBuffer().put(cells);
+            buffer.limit(4 * count);
+            writeSlice(channel, buffer, checksum);
+            for (int start = 0; start < table.length; start += SLICE_BYTES / 8) {
+                int length = Math.min(SLICE_BYTES / 8, table.length - start);
+                buffer.clear();
+                buffer.asDoubleBuffer().put(table, start, length);
+                buffer.limit(length * 8);
+                writeSlice(channel, buffer, checksum);
+            }
+
+            header.putLong(CHECKSUM_OFFSET, checksum.getValue());
+            header.rewind();
+            while (header.hasRemaining()) channel.write(header, header.position());
+        }
+    }
+
+    /**
+     * Reads the tables from a file.
+     *
+     * @return The tables, or null if the file is missing, damaged, or made for other source
+     *         files or another landmark count.
+     */
+    static Landmarks load(Grid grid, int count, String landmarkFile, String landFile, String travelTimeFile) throws IOException {
+        Path path = Paths.get(landmarkFile);
+        if (!Files.isRegularFile(path)) return null;
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES) return null;
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            ByteBuffer expected = header(grid, count, 0, landFile, travelTimeFile);
+            // Everything but the actual count and the checksum has to match
+            for (int offset = 0; offset < CHECKSUM_OFFSET; offset += 4) {
+                if (offset != 20 && header.getInt(offset) != expected.getInt(offset)) return null;
+            }
+            int landmarkCount = header.getInt(20);
+            long tableLength = (long) landmarkCount * grid.cellCount();
+            if (landmarkCount < 0 || landmarkCount > count
+                    || channel.size() != HEADER_BYTES + 4L * landmarkCount + 8 * tableLength) {
+                return null;
+            }
+
+            CRC32 checksum = new CRC32();
+            byte[] headerBytes = new byte[CHECKSUM_OFFSET];
+            header.get(0, headerBytes);
+            checksum.update(headerBytes);
+
+            int[] cells = new int[landmarkCount];
+            mapSlice(channel, HEADER_BYTES, 4L * landmarkCount, checksum).asIntBuffer().get(cells);
+            double[] table = new double[(int) tableLength];
+            long offset = HEADER_BYTES + 4L * landmarkCount;
+            for (int start = 0; start < table.length; start += SLICE_BYTES / 8) {
+                int length = Math.min(SLICE_BYTES / 8, table.length - start);
+                mapSlice(channel, offset, length * 8L, checksum).asDoubleBuffer().get(table, start, length);
+                offset += length * 8L;
+            }
+            if (checksum.getValue() != header.getLong(CHECKSUM_OFFSET)) return null;
+            return new Landmarks(grid, cells, table);
+        }
+    }
+
+    private static ByteBuffer header(Grid grid, int requested, int actual, String landFile,
+                                     String travelTimeFile) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putInt(grid.width).putInt(grid.height);
+        header.putInt(requested).putInt(actual);
+        for (String source : new String[]{landFile, travelTimeFile}) {
+            Path file = Paths.get(source);
+            header.putLong(Files.size(file));
+            header.putLong(Files.getLastModifiedTime(file).toMillis());
+        }
+        return header;
+    }
+
+    private static void writeSlice(FileChannel channel, ByteBuffer buffer, CRC32 checksum) throws IOException {
+        checksum.update(buffer.duplicate());
+        while (buffer.hasRemaining()) channel.write(buffer);
+    }
+
+    private static ByteBuffer mapSlice(FileChannel channel, long offset, long length, CRC32 checksum) throws IOException {
+        ByteBuffer slice = channel.map(FileChannel.MapMode.READ_ONLY, offset, length).order(ByteOrder.LITTLE_ENDIAN);
+        checksum.update(slice.duplicate());
+        return slice;
+    }
+}
@@ -1,23 +1,40 @@
 import java.io.*;
+import java.util.Arrays;
+import java.util.List;
 
 class Main {
     public static void main(String[] args) throws IOException {
+        if (args.length > 0 && args[0].equals("compile")) {
+            compileSnapshot(args);
+            return;
+        }
+        if (args.length > 0 && (args[0].equals("batch") || args[0].equals("visitors"))) {
+            runBatch(args);
+            return;
+        }
+
         // File paths
         String landFile = args[0];
         String travelTimeFile =  args[1];
         String missionFile = args[2];
         String outputFile =  args[3];
 
+        // Optional flags after the file paths
+        parseOptions(args, 4);
+
         // Measure start time
         long startTime = System.nanoTime();
 
         // Parse inputs
         Functions.parseInputs(landFile, travelTimeFile, missionFile);
 
+        // Open the output file, which is written during the simulation
+        Functions.openOutput(outputFile);
+
         // Simulate the journey
         Functions.simulate();
 
-        // Write outputs
+        // Write the remaining output
         Functions.writeOutput(outputFile);
 
         // Measure end time
@@ -28,5 +45,171 @@ class Main {
 
         // Print runtime to console
         System.out.printf("Execution Time: %.3f seconds%n", elapsedTimeInSeconds);
+        if (Metrics.enabled) System.out.printf("Nodes settled: %d%n", Functions.nodesSettled.sum());
+        printSearchSummary();
+        writeStats(elapsedTimeInSeconds);
+    }
+
+    // Compiles the land and travel-time files into a binary snapshot:
+    // java Main compile <land> <travel> <snapshot> [--parser=...]
+    private static void compileSnapshot(String[] args) throws IOException {
+        if (args.length < 4) {
+            throw new IllegalArgumentException("Usage: java Main compile <land> <travel> <snapshot> [--parser=...]");
+        }
+        parseOptions(args, 4);
+
+        long startTime = System.nanoTime();
+        Functions.parseInputs(args[1], args[2], null);
+        MapSnapshot.write(Functions.grid, args[1], args[2], args[3]);
+        double elapsedTimeInSeconds = (System.nanoTime() - startTime) / 1_000_000_000.0;
+        System.out.printf("Snapshot written to %s in %.3f seconds%n", args[3], elapsedTimeInSeconds);
+    }
+
+    // Simulates several missions on one map concurrently, each on its own copy of the map or,
+    // as visitors, all on the map itself:
+    // java Main batch|visitors <land> <travel> <output_directory> <mission>... [flags]
+    private static void runBatch(String[] args) throws IOException {
+        int firstFlag = 4;
+        while (firstFlag < args.length && !args[firstFlag].startsWith("--")) firstFlag++;
+        if (firstFlag == 4) {
+            throw new IllegalArgumentException("Usage: java Main " + args[0]
+                    + " <land> <travel> <output_directory> <mission>... [flags]");
+        }
+        parseOptions(args, firstFlag);
+        if (Functions.travelTimeUpdates != null) {
+            // The travel times are shared by every mission of the run
+            throw new IllegalArgumentException("--travel-updates only works with a single mission");
+        }
+
+        List<String> missionFiles = Arrays.asList(args).subList(4, firstFlag);
+        List<String> outputFiles = Functions.outputFiles(missionFiles, args[3], args[1], args[2],
+                Functions.snapshotFile, Functions.landmarkFile);
+
+        long startTime = System.nanoTime();
+        Functions.parseInputs(args[1], args[2], null);
+        if (args[0].equals("visitors")) {
+            Functions.runVisitors(missionFiles, outputFiles);
+        } else {
+            Functions.runBatch(missionFiles, outputFiles);
+        }
+        double elapsedTimeInSeconds = (System.nanoTime() - startTime) / 1_000_000_000.0;
+
+        System.out.printf("Execution Time: %.3f seconds for %d missions%n", elapsedTimeInSeconds, firstFlag - 4);
+        if (Metrics.enabled) System.out.printf("Nodes settled: %d%n", Functions.nodesSettled.sum());
+        printSearchSummary();
+        writeStats(elapsedTimeInSeconds);
+    }
+
+    // Writes the metrics report when one was asked for
+    private static void writeStats(double elapsedTimeInSeconds) throws IOException {
+        if (Functions.statsFile == null) return;
+        Metrics.writeReport(Functions.statsFile, elapsedTimeInSeconds);
+        System.out.println("Stats written to: " + Functions.statsFile);
+    }
+
+    // Reports how many hierarchical paths were replaced by the exact search, how many
+    // searches the tree cache saved and what the travel-time feed changed
+    private static void printSearchSummary() {
+        if (Functions.clusterSize > 0 && Functions.verifyHierarchical) {
+            System.out.printf("HPA* paths differing from the exact search: %d of %d%n",
+                    HierarchicalSearch.mismatches.sum(), HierarchicalSearch.queries.sum());
+        }
+        if (Functions.treeCacheSize > 0) {
+            long hits = PathTreeCache.hits.sum();
+            System.out.printf("Paths answered from cached trees: %d of %d%n", hits, hits + PathTreeCache.misses.sum());
+        }
+        if (Functions.travelTimeUpdates != null) {
+            System.out.printf("Travel-time updates: %d batches, %d edges changed, %d replans%n",
+                    TravelTimeFeed.batchesApplied.sum(), TravelTimeFeed.edgesChanged.sum(), TravelTimeFeed.replans.sum());
+        }
+    }
+
+    // Sets the run options from the flags starting at the given argument
+    static void parseOptions(String[] args, int from) {
+        for (int i = from; i < args.length; i++) {
+            // Flags are either "--name" or "--name=value"
+            String option = args[i];
+            String value = null;
+            int separator = option.indexOf('=');
+            if (separator != -1) {
+                value = option.substring(separator + 1);
+                option = option.substring(0, separator);
+            }
+
+            switch (option) {
+                case "--incremental":
+                    Functions.incrementalReplanning = true;
+                    break;
+                case "--astar":
+                    Functions.goalDirected = true;
+                    break;
+                case "--bidirectional":
+                    Functions.bidirectional = true;
+                    break;
+                case "--parallel-help":
+                    Functions.parallelWizardHelp = true;
+                    break;
+                case "--help-fields":
+                    Functions.scoreHelpWithFields = true;
+                    break;
+                case "--queue":
+                    Functions.queueKind = requireValue(option, value);
+                    break;
+                case "--parser":
+                    Functions.parserKind = requireValue(option, value);
+                    break;
+                case "--async-output":
+                    Functions.backgroundOutput = true;
+                    break;
+                case "--snapshot":
+                    Functions.snapshotFile = requireValue(option, value);
+                    break;
+                case "--storage":
+                    Functions.storageKind = requireValue(option, value);
+                    break;
+                case "--landmarks":
+                    Functions.landmarkCount = Integer.parseInt(requireValue(option, value));
+                    Functions.goalDirected = true;
+                    break;
+                case "--landmark-file":
+                    Functions.landmarkFile = requireValue(option, value);
+                    break;
+                case "--hpa":
+                    Functions.clusterSize = Integer.parseInt(requireValue(option, value));
+                    break;
+                case "--hpa-verify":
+                    Functions.verifyHierarchical = true;
+                    break;
+                case "--tree-cache":
+                    Functions.treeCacheSize = Integer.parseInt(requireValue(option, value));
+                    break;
+                case "--tree-cache-eviction":
+                    Functions.treeCacheEviction = requireValue(option, value);
+                    break;
+                case "--metrics":
+                    Metrics.enabled = true;
+                    break;
+                case "--stats":
+                    Functions.statsFile = requireValue(option, value);
+                    Metrics.enabled = true;
+                    break;
+                case "--travel-updates":
+                    Functions.travelTimeUpdates = requireValue(option, value);
+                    break;
+                case "--threads":
+                    Functions.batchThreads = Integer.parseInt(requireValue(option, value));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+    }
+
+    // Returns the value of a "--name=value" flag, failing if it was given without one
+    private static String requireValue(String option, String value) {
+        if (value == null || value.isEmpty()) {
+            throw new IllegalArgumentException("Option " + option + " needs a value");
+        }
+        return value;
     }
 }
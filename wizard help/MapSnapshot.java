@@ -0,0 +1,172 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Binary snapshot of a parsed map: grid size, cell types and travel times, stored as raw
+ * little-endian arrays so they can be copied straight into a Grid without parsing.
+ * The snapshot records the size and modification time of the land and travel-time files
+ * it was compiled from, and is ignored once either file changes.
+ *
+ * Layout: a 64-byte header (magic, version, width, height, smallest travel time, the size
+ * and modification time of both source files, CRC32), then type[], timeXPlus[], timeYPlus[].
+ * The checksum covers the header fields before it and all the arrays. With mapped storage
+ * the travel times are not copied: the map reads them straight from the snapshot file.
+ */
+class MapSnapshot {
+    private static final int MAGIC = 0x574d4150; // "WMAP"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 64;
+    private static final int CHECKSUM_OFFSET = 56;
+
+    // Largest region mapped or buffered at once, well below the 2 GiB mapping limit
+    private static final int SLICE_BYTES = 1 << 26;
+
+    /**
+     * Writes a snapshot of the given map, compiled from the given source files.
+     */
+    static void write(Grid grid, String landFile, String travelTimeFile, String snapshotFile) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putInt(grid.width).putInt(grid.height);
+        header.putDouble(grid.minTravelTime);
+        putSource(header, Paths.get(landFile));
+        putSource(header, Paths.get(travelTimeFile));
+
+        CRC32 checksum = new CRC32();
+        checksum.update(header.array(), 0, CHECKSUM_OFFSET);
+
+        try (FileChannel channel = FileChannel.open(Paths.get(snapshotFile), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.position(HEADER_BYTES);
+            ByteBuffer buffer = ByteBuffer.allocateDirect(SLICE_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            int cellCount = grid.cellCount();
+
+            for (int start = 0; start < cellCount; start += SLICE_BYTES / 4) {
+                int length = Math.min(SLICE_BYTES / 4, cellCount - start);
+                buffer.clear();
+                IntBuffer types = buffer.asIntBuffer();
+                for (int i = 0; i < length; i++) types.put(i, grid.type(start + i));
+                buffer.limit(length * 4);
+                writeSlice(channel, buffer, checksum);
+            }
+            for (boolean xPlus : new boolean[]{true, false}) {
+                for (int start = 0; start < cellCount; start += SLICE_BYTES / 8) {
+                    int length = Math.min(SLICE_BYTES / 8, cellCount - start);
+                    buffer.clear();
+                    DoubleBuffer times = buffer.asDoubleBuffer();
+                    for (int i = 0; i < length; i++) {
+                        times.put(i, xPlus ? grid.times.xPlus(start + i) : grid.times.yPlus(start + i));
+                    }
+                    buffer.limit(length * 8);
+                    writeSlice(channel, buffer, checksum);
+                }
+            }
+
+            header.putLong(CHECKSUM_OFFSET, checksum.getValue());
+            header.rewind();
+            while (header.hasRemaining()) channel.write(header, header.position());
+        }
+    }
+
+    /**
+     * Loads the map from a snapshot.
+     *
+     * @return The map, or null if the snapshot is missing, damaged, of another version, or
+     *         older than the land and travel-time files.
+     */
+    static Grid load(String snapshotFile, String landFile, String travelTimeFile) throws IOException {
+        Path path = Paths.get(snapshotFile);
+        if (!Files.isRegularFile(path)) return null;
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES) return null;
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) return null;
+            if (!matchesSource(header, 24, Paths.get(landFile)) || !matchesSource(header, 40, Paths.get(travelTimeFile))) {
+                return null;
+            }
+
+            int width = header.getInt(8);
+            int height = header.getInt(12);
+            long cellCount = (long) width * height;
+            if (width < 0 || height < 0 || channel.size() != HEADER_BYTES + cellCount * 20) return null;
+
+            CRC32 checksum = new CRC32();
+            byte[] headerBytes = new byte[CHECKSUM_OFFSET];
+            header.get(0, headerBytes);
+            checksum.update(headerBytes);
+
+            // Mapped travel times are read straight from the snapshot, which stays read-only, unless
+            // a travel-time feed will change them
+            boolean mapped = Functions.storageKind.equals("mapped") && Functions.travelTimeUpdates == null;
+            long timesOffset = HEADER_BYTES + cellCount * 4;
+            TravelTimes times = mapped
+                    ? OffHeapTravelTimes.map(channel, timesOffset, (int) cellCount, FileChannel.MapMode.READ_ONLY, null)
+                    : TravelTimes.allocate(Functions.storageKind, (int) cellCount);
+            Grid grid = new Grid(width, height, times);
+            grid.minTravelTime = header.getDouble(16);
+
+            long offset = HEADER_BYTES;
+            for (int start = 0; start < cellCount; start += SLICE_BYTES / 4) {
+                int length = (int) Math.min(SLICE_BYTES / 4, cellCount - start);
+                MappedByteBuffer slice = mapSlice(channel, offset, length * 4L, checksum);
+                IntBuffer types = slice.asIntBuffer();
+                for (int i = 0; i < length; i++) {
+                    // Only existing cells allocate their tile; setType also reveals type 1 cells
+                    int cellType = types.get(i);
+                    if (cellType != Grid.ABSENT) grid.setType(start + i, cellType);
+                }
+                offset += length * 4L;
+            }
+            for (boolean xPlus : new boolean[]{true, false}) {
+                for (int start = 0; start < cellCount; start += SLICE_BYTES / 8) {
+                    int length = (int) Math.min(SLICE_BYTES / 8, cellCount - start);
+                    MappedByteBuffer slice = mapSlice(channel, offset, length * 8L, checksum);
+                    if (!mapped) {
+                        DoubleBuffer source = slice.asDoubleBuffer();
+                        for (int i = 0; i < length; i++) {
+                            if (xPlus) times.setXPlus(start + i, source.get(i));
+                            else times.setYPlus(start + i, source.get(i));
+                        }
+                    }
+                    offset += length * 8L;
+                }
+            }
+            if (checksum.getValue() != header.getLong(CHECKSUM_OFFSET)) return null;
+            return grid;
+        }
+    }
+
+    // Records the size and modification time of a source file
+    private static void putSource(ByteBuffer header, Path source) throws IOException {
+        header.putLong(Files.size(source));
+        header.putLong(Files.getLastModifiedTime(source).toMillis());
+    }
+
+    private static boolean matchesSource(ByteBuffer header, int offset, Path source) throws IOException {
+        if (!Files.isRegularFile(source)) return false;
+        return header.getLong(offset) == Files.size(source)
+                && header.getLong(offset + 8) == Files.getLastModifiedTime(source).toMillis();
+    }
+
+    private static void writeSlice(FileChannel channel, ByteBuffer buffer, CRC32 checksum) throws IOException {
+        checksum.update(buffer.duplicate());
+        while (buffer.hasRemaining()) channel.write(buffer);
+    }
+
+    private static MappedByteBuffer mapSlice(FileChannel channel, long offset, long length, CRC32 checksum) throws IOException {
+        MappedByteBuffer slice = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+        slice.order(ByteOrder.LITTLE_ENDIAN);
+        checksum.update(slice.duplicate());
+        return slice;
+    }
+}
@@ -0,0 +1,332 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Parses the land, travel-time and mission files straight from memory-mapped bytes into the
+ * grid, without creating a String per line. Large files are split into line-aligned chunks,
+ * which can be parsed in parallel together with the other files.
+ */
+class MappedInputParser {
+    // Largest chunk mapped at once; a mapping cannot exceed Integer.MAX_VALUE bytes
+    private static final long MAX_CHUNK = 1L << 30;
+
+    // Files below this size are parsed as a single chunk
+    private static final long MIN_PARALLEL_CHUNK = 1L << 22;
+
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+    /**
+     * Parses the input files into the fields of Functions.
+     *
+     * @param missionFile The mission file, or null to load only the map.
+     * @param parallel Whether to parse the files and their chunks concurrently.
+     * @throws IOException If a file cannot be read or contains an unexpected character.
+     */
+    static void parse(String landFile, String travelTimeFile, String missionFile, boolean parallel) throws IOException {
+        try (FileChannel land = FileChannel.open(Paths.get(landFile), StandardOpenOption.READ);
+             FileChannel travel = FileChannel.open(Paths.get(travelTimeFile), StandardOpenOption.READ);
+             FileChannel mission = missionFile == null ? null : FileChannel.open(Paths.get(missionFile), StandardOpenOption.READ)) {
+
+            // The header fixes the grid size, everything else can be parsed independently
+            ByteCursor header = new ByteCursor(landFile, map(land, 0, Math.min(land.size(), 64)), 0);
+            int gridWidth = header.readInt();
+            int gridHeight = header.readInt();
+            long landBodyStart = header.position() + lineEndLength(land, header.position());
+            Grid grid = new Grid(gridWidth, gridHeight);
+
+            int threads = parallel ? Runtime.getRuntime().availableProcessors() : 1;
+            List<Callable<Double>> tasks = new ArrayList<>();
+            for (long[] chunk : chunks(land, landBodyStart, threads)) {
+                tasks.add(() -> parseLand(grid, new ByteCursor(landFile, map(land, chunk[0], chunk[1]), chunk[0])));
+            }
+            for (long[] chunk : chunks(travel, 0, threads)) {
+                tasks.add(() -> parseTravelTimes(grid, new ByteCursor(travelTimeFile, map(travel, chunk[0], chunk[1]), chunk[0])));
+            }
+            MissionData missionData = new MissionData();
+            if (mission != null) {
+                tasks.add(() -> {
+                    parseMission(grid, new ByteCursor(missionFile, map(mission, 0, mission.size()), 0), missionData);
+                    return Double.MAX_VALUE;
+                });
+            }
+
+            // Each travel-time chunk reports its smallest positive travel time
+            double minTravelTime = Double.MAX_VALUE;
+            for (double chunkMin : run(tasks, parallel)) {
+                minTravelTime = Math.min(minTravelTime, chunkMin);
+            }
+            grid.minTravelTime = minTravelTime == Double.MAX_VALUE ? 0 : minTravelTime;
+
+            Functions.grid = grid;
+            if (mission != null) {
+                Functions.mission = new Mission(grid);
+                Functions.mission.radius = missionData.radius;
+                Functions.mission.startCell = missionData.startCell;
+                Functions.mission.objectives.addAll(missionData.objectives);
+            }
+        }
+    }
+
+    // Lines "x y type"
+    private static double parseLand(Grid grid, ByteCursor cursor) throws IOException {
+        while (cursor.skipEmptyLines()) {
+            int x = cursor.readInt();
+            int y = cursor.readInt();
+            int type = cursor.readInt();
+            cursor.endLine();
+            grid.setType(grid.cellOf(x, y), type);
+        }
+        return Double.MAX_VALUE;
+    }
+
+    // Lines "x-y,x-y time"; returns the smallest positive travel time in the chunk
+    private static double parseTravelTimes(Grid grid, ByteCursor cursor) throws IOException {
+        double minTravelTime = Double.MAX_VALUE;
+        while (cursor.skipEmptyLines()) {
+            int fromX = cursor.readInt();
+            cursor.expect('-');
+            int fromY = cursor.readInt();
+            cursor.expect(',');
+            int toX = cursor.readInt();
+            cursor.expect('-');
+            int toY = cursor.readInt();
+            double travelTime = cursor.readDouble();
+            cursor.endLine();
+
+            grid.setTravelTime(grid.cellOf(fromX, fromY), grid.cellOf(toX, toY), travelTime);
+            if (travelTime > 0) minTravelTime = Math.min(minTravelTime, travelTime);
+        }
+        return minTravelTime;
+    }
+
+    // Radius, then the start "x y", then one objective "x y [options...]" per line
+    private static void parseMission(Grid grid, ByteCursor cursor, MissionData missionData) throws IOException {
+        cursor.skipEmptyLines();
+        missionData.radius = cursor.readInt();
+        cursor.endLine();
+
+        cursor.skipEmptyLines();
+        int startX = cursor.readInt();
+        int startY = cursor.readInt();
+        cursor.endLine();
+        missionData.startCell = grid.cellOf(startX, startY);
+
+        while (cursor.skipEmptyLines()) {
+            int objX = cursor.readInt();
+            int objY = cursor.readInt();
+
+            ArrayList<Integer> helpOptions = new ArrayList<>();
+            while (!cursor.atLineEnd()) {
+                helpOptions.add(cursor.readInt());
+            }
+            cursor.endLine();
+            missionData.objectives.add(new Objective(grid.cellOf(objX, objY), helpOptions, !helpOptions.isEmpty()));
+        }
+    }
+
+    private static List<Double> run(List<Callable<Double>> tasks, boolean parallel) throws IOException {
+        List<Double> results = new ArrayList<>();
+        try {
+            if (parallel) {
+                for (Future<Double> future : ForkJoinPool.commonPool().invokeAll(tasks)) {
+                    results.add(future.get());
+                }
+            } else {
+                for (Callable<Double> task : tasks) {
+                    results.add(task.call());
+                }
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+            throw new IOException(e.getCause());
+        } catch (IOException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+        return results;
+    }
+
+    // Splits the file from the given offset into line-aligned {start, length} chunks
+    private static List<long[]> chunks(FileChannel channel, long start, int threads) throws IOException {
+        long size = channel.size();
+        long remaining = size - start;
+        long chunkSize = Math.min(MAX_CHUNK, Math.max(MIN_PARALLEL_CHUNK, remaining / threads + 1));
+
+        List<long[]> chunks = new ArrayList<>();
+        while (start < size) {
+            long end = start + chunkSize >= size ? size : nextLineStart(channel, start + chunkSize);
+            chunks.add(new long[]{start, end - start});
+            start = end;
+        }
+        return chunks;
+    }
+
+    // Offset just after the first line break at or after the given offset
+    private static long nextLineStart(FileChannel channel, long offset) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        while (true) {
+            buffer.clear();
+            int read = channel.read(buffer, offset);
+            if (read <= 0) return channel.size();
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') return offset + i + 1;
+            }
+            offset += read;
+        }
+    }
+
+    // Length of the line break at the given offset, so the header line can be skipped
+    private static long lineEndLength(FileChannel channel, long offset) throws IOException {
+        return nextLineStart(channel, offset) - offset;
+    }
+
+    private static MappedByteBuffer map(FileChannel channel, long start, long length) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+    }
+
+    // Mission fields filled by the mission task
+    private static class MissionData {
+        int radius;
+        int startCell;
+        ArrayList<Objective> objectives = new ArrayList<>();
+    }
+
+    /**
+     * Reads numbers from a mapped chunk of a file. Fields are separated by spaces.
+     */
+    private static class ByteCursor {
+        private final String fileName;
+        private final ByteBuffer bytes;
+        private final long fileOffset; // Offset of the chunk in the file, for error messages
+        private final int limit;
+        private int position = 0;
+
+        ByteCursor(String fileName, ByteBuffer bytes, long fileOffset) {
+            this.fileName = fileName;
+            this.bytes = bytes;
+            this.fileOffset = fileOffset;
+            this.limit = bytes.limit();
+        }
+
+        long position() {
+            return position;
+        }
+
+        // Skips blank lines and reports whether another line follows
+        boolean skipEmptyLines() {
+            while (position < limit) {
+                byte b = bytes.get(position);
+                if (b != '\n' && b != '\r' && b != ' ') return true;
+                position++;
+            }
+            return false;
+        }
+
+        boolean atLineEnd() {
+            skipSpaces();
+            return position >= limit || bytes.get(position) == '\n' || bytes.get(position) == '\r';
+        }
+
+        void endLine() throws IOException {
+            if (!atLineEnd()) throw unexpected();
+            while (position < limit && (bytes.get(position) == '\r' || bytes.get(position) == '\n')) {
+                if (bytes.get(position++) == '\n') return;
+            }
+        }
+
+        void expect(char c) throws IOException {
+            if (position >= limit || bytes.get(position) != c) throw unexpected();
+            position++;
+        }
+
+        int readInt() throws IOException {
+            skipSpaces();
+            boolean negative = false;
+            if (position < limit && (bytes.get(position) == '-' || bytes.get(position) == '+')) {
+                negative = bytes.get(position++) == '-';
+            }
+
+            int start = position;
+            long value = 0;
+            while (position < limit) {
+                int digit = bytes.get(position) - '0';
+                if (digit < 0 || digit > 9) break;
+                value = value * 10 + digit;
+                if (value > (long) Integer.MAX_VALUE + 1) throw unexpected();
+                position++;
+            }
+            if (position == start) throw unexpected();
+
+            value = negative ? -value : value;
+            if (value > Integer.MAX_VALUE) throw unexpected();
+            return (int) value;
+        }
+
+        // Decimal numbers without exponent and with at most 15 significant digits are
+        // computed exactly, anything else goes through Double.parseDouble
+        double readDouble() throws IOException {
+            skipSpaces();
+            int start = position;
+            boolean negative = false;
+            if (position < limit && (bytes.get(position) == '-' || bytes.get(position) == '+')) {
+                negative = bytes.get(position++) == '-';
+            }
+
+            long mantissa = 0;
+            int digits = 0;
+            int fractionDigits = 0;
+            boolean inFraction = false;
+            boolean fastPath = true;
+            while (position < limit) {
+                byte b = bytes.get(position);
+                if (b >= '0' && b <= '9') {
+                    if (mantissa != 0 || b != '0') digits++;
+                    mantissa = mantissa * 10 + (b - '0');
+                    if (inFraction) fractionDigits++;
+                    if (digits > 15) fastPath = false;
+                } else if (b == '.' && !inFraction) {
+                    inFraction = true;
+                } else if (b == ' ' || b == '\r' || b == '\n') {
+                    break;
+                } else {
+                    fastPath = false; // Exponents, Infinity, NaN and the like
+                }
+                position++;
+            }
+            if (position == start) throw unexpected();
+
+            if (fastPath && fractionDigits < POWERS_OF_TEN.length) {
+                double value = mantissa / POWERS_OF_TEN[fractionDigits];
+                return negative ? -value : value;
+            }
+            byte[] text = new byte[position - start];
+            bytes.get(start, text);
+            try {
+                return Double.parseDouble(new String(text, java.nio.charset.StandardCharsets.US_ASCII));
+            } catch (NumberFormatException e) {
+                throw unexpected();
+            }
+        }
+
+        private void skipSpaces() {
+            while (position < limit && bytes.get(position) == ' ') position++;
+        }
+
+        private IOException unexpected() {
+            return new IOException("Unexpected input in " + fileName + " at byte " + (fileOffset + position));
+        }
+    }
+}
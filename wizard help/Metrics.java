@@ -0,0 +1,159 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Counters and timings of the simulation's phases, also emitted as JFR events. Nothing is
+ * measured unless enabled is set, so the instrumented code only pays for one static read.
+ * Counters are shared by every mission of the run and safe to update from several threads.
+ */
+class Metrics {
+    static boolean enabled = false;
+
+    enum Phase { PARSE, REVEAL, SEARCH, HELP, OUTPUT }
+
+    private static final LongAdder[] phaseNanos = new LongAdder[Phase.values().length];
+    private static final LongAdder[] phaseCalls = new LongAdder[Phase.values().length];
+    static {
+        for (int i = 0; i < phaseNanos.length; i++) {
+            phaseNanos[i] = new LongAdder();
+            phaseCalls[i] = new LongAdder();
+        }
+    }
+
+    static final LongAdder searches = new LongAdder();
+    static final LongAdder replans = new LongAdder();
+    static final LongAdder heapInserts = new LongAdder();
+    static final LongAdder stalePops = new LongAdder();
+    static final LongAdder cellsRevealed = new LongAdder();
+    static final LongAdder optionsEvaluated = new LongAdder();
+
+    @Name("wizard.Phase")
+    @Label("Simulation Phase")
+    @Category("Wizard Help")
+    @Description("One call of a timed part of the simulation")
+    static class PhaseEvent extends Event {
+        @Label("Phase")
+        String phase;
+
+        @Label("Elapsed")
+        @Timespan(Timespan.NANOSECONDS)
+        long elapsed;
+    }
+
+    @Name("wizard.Search")
+    @Label("Path Search")
+    @Category("Wizard Help")
+    @Description("One flat path search and the work it did")
+    static class SearchEvent extends Event {
+        @Label("Algorithm")
+        String algorithm;
+
+        @Label("Start Cell")
+        int start;
+
+        @Label("Target Cell")
+        int target;
+
+        @Label("Nodes Settled")
+        long settled;
+
+        @Label("Heap Inserts")
+        long inserts;
+
+        @Label("Stale Pops")
+        long stalePops;
+
+        @Label("Elapsed")
+        @Timespan(Timespan.NANOSECONDS)
+        long elapsed;
+    }
+
+    /**
+     * Returns the start time of a measured call, or 0 when metrics are disabled.
+     */
+    static long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Records a call of a phase that began at the given start time.
+     */
+    static void end(Phase phase, long startTime) {
+        if (!enabled) return;
+        long elapsed = System.nanoTime() - startTime;
+        phaseNanos[phase.ordinal()].add(elapsed);
+        phaseCalls[phase.ordinal()].increment();
+
+        PhaseEvent event = new PhaseEvent();
+        if (event.shouldCommit()) {
+            event.phase = phase.name().toLowerCase(Locale.ROOT);
+            event.elapsed = elapsed;
+            event.commit();
+        }
+    }
+
+    /**
+     * Records a finished search; its time counts towards the search phase.
+     */
+    static void search(String algorithm, int start, int target, long settled, long inserts, long stale, long startTime) {
+        if (!enabled) return;
+        long elapsed = System.nanoTime() - startTime;
+        phaseNanos[Phase.SEARCH.ordinal()].add(elapsed);
+        phaseCalls[Phase.SEARCH.ordinal()].increment();
+        searches.increment();
+        heapInserts.add(inserts);
+        stalePops.add(stale);
+
+        SearchEvent event = new SearchEvent();
+        if (event.shouldCommit()) {
+            event.algorithm = algorithm;
+            event.start = start;
+            event.target = target;
+            event.settled = settled;
+            event.inserts = inserts;
+            event.stalePops = stale;
+            event.elapsed = elapsed;
+            event.commit();
+        }
+    }
+
+    /**
+     * Writes the counters as a JSON object. Phase times overlap where phases nest: the search
+     * time includes the searches made while scoring the wizard's help.
+     */
+    static void writeReport(String file, double executionSeconds) throws IOException {
+        StringBuilder json = new StringBuilder();
+        json.append("{\n");
+        json.append(String.format(Locale.ROOT, "  \"executionSeconds\": %.6f,%n", executionSeconds));
+        json.append("  \"phases\": {\n");
+        Phase[] phases = Phase.values();
+        for (int i = 0; i < phases.length; i++) {
+            json.append(String.format(Locale.ROOT, "    \"%s\": {\"calls\": %d, \"millis\": %.3f}%s%n",
+                    phases[i].name().toLowerCase(Locale.ROOT), phaseCalls[i].sum(),
+                    phaseNanos[i].sum() / 1_000_000.0, i + 1 < phases.length ? "," : ""));
+        }
+        json.append("  },\n");
+        appendCounter(json, "searches", searches.sum(), true);
+        appendCounter(json, "replans", replans.sum(), true);
+        appendCounter(json, "nodesSettled", Functions.nodesSettled.sum(), true);
+        appendCounter(json, "heapInserts", heapInserts.sum(), true);
+        appendCounter(json, "stalePops", stalePops.sum(), true);
+        appendCounter(json, "cellsRevealed", cellsRevealed.sum(), true);
+        appendCounter(json, "optionsEvaluated", optionsEvaluated.sum(), false);
+        json.append("}\n");
+        Files.writeString(Path.of(file), json);
+    }
+
+    private static void appendCounter(StringBuilder json, String name, long value, boolean more) {
+        json.append("  \"").append(name).append("\": ").append(value).append(more ? ",\n" : "\n");
+    }
+}
@@ -0,0 +1,718 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * One mission on a map: its objectives, what the visitor has revealed so far, the changes
+ * made by the wizard's help and the search state. Missions on separate copies of the same
+ * map (see Grid(Grid)) share nothing mutable, so they can be simulated concurrently.
+ * Missions on one shared map are stepped together by VisitorSimulation.
+ */
+class Mission {
+    final Grid grid;
+    final TypeIndex typeIndex; // Cells of each type, kept in sync with makeChanges
+    int radius;
+    final ArrayList<Objective> objectives = new ArrayList<>();
+    int startCell;
+    OutputLog outputLog; // Opened by openOutput before the simulation
+
+    // Distance-field scorer for the wizard's help options, created on first use
+    private HelpOptionScorer helpScorer;
+
+    // Search used by the simulating thread, created on first use
+    private PathSearch search;
+
+    // Incremental planner, reset for each objective and created on first use
+    private DStarLite incrementalPlanner;
+
+    // Hierarchical search for the visitor's paths, created on first use
+    private HierarchicalSearch hierarchicalSearch;
+
+    // Recent shortest-path trees of the simulation thread's searches, null when not cached
+    private final PathTreeCache treeCache;
+
+    // Landmark tables for A*, null when not used or no longer admissible for this map
+    Landmarks landmarks;
+    private boolean landmarksOutdated; // Dropped because help opened cells they treat as closed
+
+    // Searches used by worker threads when wizard help options are evaluated in parallel
+    private final ThreadLocal<PathSearch> workerSearch;
+
+    // Disc checked by revealNodes and the center of its previous call, -1 after map changes
+    private DiscMask revealMask;
+    int lastRevealCenter = -1;
+    int[] newlyRevealed = new int[64]; // Cells revealed by the last call of revealNodes
+    private int newlyRevealedCount;
+
+    // Path of searches that are only timed or copied, created on first use
+    private int[] scratchPath;
+
+    // Travel-time changes applied during the simulation, null when the times are fixed
+    TravelTimeFeed travelTimeFeed;
+    private long moves; // Moves made so far, which decide when the feed's batches are due
+    private int[] changedEnds = new int[32]; // Both cells of each edge changed by a batch
+    private DistanceField targetField; // Times to the objective, created on the first faster edge
+
+    // Smallest travel time of the map as parsed, which the grid distance bound was built
+    // with, and the edges the feed made faster than it; the bound uses the fastest of those
+    // while there are any
+    private double parsedMinTravelTime = -1;
+    private long[] fastEdges = new long[16]; // Lower cell << 32 | higher cell
+    private double[] fastEdgeTimes = new double[16];
+    private int fastEdgeCount;
+
+    Mission(Grid grid) {
+        this(grid, new TypeIndex(grid));
+    }
+
+    // A mission sharing its map with others also shares the map's type index
+    Mission(Grid grid, TypeIndex typeIndex) {
+        this.grid = grid;
+        this.typeIndex = typeIndex;
+        this.workerSearch = ThreadLocal.withInitial(() -> new PathSearch(grid, Functions.queueKind));
+        this.landmarks = Functions.landmarks;
+        this.treeCache = Functions.treeCacheSize > 0
+                ? new PathTreeCache(grid, Functions.treeCacheSize, Functions.treeCacheEviction) : null;
+    }
+
+    /**
+     * Simulates the journey by navigating through objectives and adjusting the map dynamically.
+     */
+    void simulate() {
+        int currentCell = startCell;
+        long[] pathMembers = new long[(grid.cellCount() + 63) >>> 6]; // Cells of the path being followed
+        int[] path = new int[grid.maxPathLength()]; // Path being followed, rewritten by every replan
+
+        for (int i = 0; i < objectives.size(); i++) {
+            Objective objective = objectives.get(i);
+            if (travelTimeFeed != null) {
+                // The wizard's help may have opened cells, which the field cannot follow
+                if (targetField != null) targetField.clear();
+                applyTravelTimeUpdates(null, pathMembers, path, 0, 0);
+            }
+
+            // Reveal nodes within the radius of the starting node
+            revealNodes(currentCell, radius);
+
+            // Calculate the initial path to the target
+            DStarLite planner = Functions.incrementalReplanning ? incrementalPlanner(objective.target) : null;
+            int pathLength = planPath(planner, currentCell, objective.target, path);
+
+            while (true) {
+                boolean isPathBreak = false;
+                boolean blockedBeforeStart = markPath(pathMembers, path, pathLength);
+
+                // Traverse the path
+                for (int j = 1; j < pathLength; j++) {
+                    // New travel times can make another path faster than the rest of this one
+                    if (travelTimeFeed != null && applyTravelTimeUpdates(planner, pathMembers, path, j - 1, pathLength)) {
+                        isPathBreak = true;
+                        currentCell = path[j - 1];
+                        break;
+                    }
+                    moves++;
+
+                    int tempCell = path[j];
+                    outputLog.append("Moving to ").append(grid.x(tempCell)).append('-').append(grid.y(tempCell)).endLine();
+
+                    // Reveal nodes within the radius of the current node
+                    int revealedCount = revealNodes(tempCell, radius);
+                    if (planner != null) planner.cellsChanged(newlyRevealed, revealedCount);
+
+                    // Check if any newly revealed nodes break the current path; a path that was
+                    // already blocked when it was planned breaks on the first move
+                    if ((j == 1 && blockedBeforeStart) || crossesPath(pathMembers, newlyRevealed, revealedCount)) {
+                        outputLog.append("Path is impassable!").endLine();
+                        isPathBreak = true;
+                        currentCell = tempCell;
+                        break;
+                    }
+                }
+                unmarkPath(pathMembers, path, pathLength);
+
+                if (isPathBreak) {
+                    // Recalculate the path from the last valid node to the target
+                    if (Metrics.enabled) Metrics.replans.increment();
+                    pathLength = planPath(planner, currentCell, objective.target, path);
+                } else {
+                    // Path traversal is complete
+                    break;
+                }
+            }
+
+            // Log the completion of the objective
+            outputLog.append("Objective ").append(i + 1).append(" reached!").endLine();
+
+            // Handle wizard's help if offered
+            if (objective.offersHelp) {
+                int bestOption = handleWizardHelp(objective.helpOptions, objective.target,
+                        (i + 1 < objectives.size()) ? objectives.get(i + 1).target : -1);
+                outputLog.append("Number ").append(bestOption).append(" is chosen!").endLine();
+                makeChanges(bestOption);
+            }
+
+            // Update the current node for the next objective
+            currentCell = objective.target;
+        }
+    }
+
+    /**
+     * Applies the feed's batches due before the next move and tells the searches about them.
+     *
+     * @param members The cells of the path being followed, marked as by markPath.
+     * @param from    Index in the path of the visitor's cell; the path ends at index length - 1.
+     * @return Whether the rest of the path may no longer be the fastest: one of its edges
+     *         became slower, or a faster edge elsewhere may give a faster path.
+     */
+    boolean applyTravelTimeUpdates(DStarLite planner, long[] members, int[] path, int from, int length) {
+        boolean replan = false;
+        TravelTimeFeed.Batch batch;
+        while ((batch = travelTimeFeed.poll(moves + 1)) != null) {
+            replan |= applyBatch(batch, planner, members, path, from, length);
+        }
+        if (replan) TravelTimeFeed.replans.increment();
+        return replan;
+    }
+
+    private boolean applyBatch(TravelTimeFeed.Batch batch, DStarLite planner, long[] members, int[] path,
+                               int from, int length) {
+        if (changedEnds.length < 2 * batch.size) changedEnds = new int[2 * batch.size];
+        int changedCount = 0;
+        boolean slowerOnPath = false;
+        boolean slower = false;
+        boolean faster = false;
+        for (int k = 0; k < batch.size; k++) {
+            int a = batch.from[k];
+            int b = batch.to[k];
+            double time = batch.times[k];
+            double oldTime = grid.edgeTime(a, b);
+            if (time == oldTime) continue;
+            grid.setTravelTime(a, b, time);
+            trackMinTravelTime(a, b, time);
+            changedEnds[2 * changedCount] = a;
+            changedEnds[2 * changedCount + 1] = b;
+            changedCount++;
+
+            if (time > 0 && (oldTime == 0 || time < oldTime)) {
+                faster = true;
+            } else {
+                slower = true;
+                slowerOnPath |= onPath(members, path, from, length, a, b);
+            }
+        }
+        TravelTimeFeed.batchesApplied.increment();
+        TravelTimeFeed.edgesChanged.add(changedCount);
+        if (changedCount == 0) return false;
+
+        // Faster edges would make the landmark bounds inadmissible, so the tables are lowered
+        if (faster && landmarks != null) landmarks.edgesFaster(grid, changedEnds, changedCount);
+        if (treeCache != null) treeCache.edgesChanged(changedEnds, changedCount);
+        if (planner != null) planner.cellsChanged(changedEnds, 2 * changedCount);
+        if (hierarchicalSearch != null) hierarchicalSearch.cellsChanged(changedEnds, 2 * changedCount);
+
+        int target = length > 0 ? path[length - 1] : -1;
+        if (targetField != null && targetField.isFor(target)) {
+            if (slower) targetField.loosen();
+            if (faster) targetField.edgesFaster(changedEnds, changedCount);
+        }
+
+        if (slowerOnPath) return true;
+        if (!faster || length - from < 2) return false;
+
+        // The path only has to change if the visitor's cell is now closer to the target than
+        // the rest of the path takes. Times that may be too low are computed again first.
+        if (targetField == null) targetField = new DistanceField(grid);
+        if (!targetField.isFor(target)) targetField.compute(target);
+        int current = path[from];
+        double remaining = remainingTime(path, from, length);
+        if (targetField.time(current) >= remaining) return false;
+        if (!targetField.isExact()) {
+            targetField.compute(target);
+            return targetField.time(current) < remaining;
+        }
+        return true;
+    }
+
+    // Time along the path from index from to its end, summed from the end as DistanceField does
+    private double remainingTime(int[] path, int from, int length) {
+        double time = 0;
+        for (int i = length - 1; i > from; i--) {
+            time = grid.edgeTime(path[i - 1], path[i]) + time;
+        }
+        return time;
+    }
+
+    // Keeps grid.minTravelTime at most the time of every edge after one changes, and no
+    // lower than it has to be
+    private void trackMinTravelTime(int a, int b, double time) {
+        if (parsedMinTravelTime < 0) parsedMinTravelTime = grid.minTravelTime;
+        long edge = (long) Math.min(a, b) << 32 | Math.max(a, b);
+        int index = 0;
+        while (index < fastEdgeCount && fastEdges[index] != edge) index++;
+
+        if (time > 0 && time < parsedMinTravelTime) {
+            if (index == fastEdgeCount) {
+                if (fastEdgeCount == fastEdges.length) {
+                    fastEdges = Arrays.copyOf(fastEdges, fastEdgeCount * 2);
+                    fastEdgeTimes = Arrays.copyOf(fastEdgeTimes, fastEdgeCount * 2);
+                }
+                fastEdges[fastEdgeCount++] = edge;
+            }
+            fastEdgeTimes[index] = time;
+        } else if (index < fastEdgeCount) {
+            fastEdgeCount--;
+            fastEdges[index] = fastEdges[fastEdgeCount];
+            fastEdgeTimes[index] = fastEdgeTimes[fastEdgeCount];
+        } else {
+            return;
+        }
+
+        double minTime = parsedMinTravelTime;
+        for (int i = 0; i < fastEdgeCount; i++) {
+            minTime = Math.min(minTime, fastEdgeTimes[i]);
+        }
+        grid.minTravelTime = minTime;
+    }
+
+    // Whether the edge between two cells is on the path from index from
+    private static boolean onPath(long[] members, int[] path, int from, int length, int a, int b) {
+        if ((members[a >>> 6] & (1L << a)) == 0 || (members[b >>> 6] & (1L << b)) == 0) return false;
+        for (int i = from + 1; i < length; i++) {
+            if ((path[i - 1] == a && path[i] == b) || (path[i - 1] == b && path[i] == a)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * The mission's incremental planner, reset to plan towards the given target.
+     */
+    DStarLite incrementalPlanner(int target) {
+        if (incrementalPlanner == null) incrementalPlanner = new DStarLite(grid);
+        incrementalPlanner.reset(target);
+        return incrementalPlanner;
+    }
+
+    /**
+     * Plans a path with the incremental planner if one is given, otherwise with a fresh search,
+     * and writes it to the given array. Only the flat search writes it without allocating.
+     *
+     * @return The number of cells of the path.
+     */
+    int planPath(DStarLite planner, int start, int target, int[] path) {
+        int[] planned;
+        if (planner != null) {
+            planned = planner.plan(start);
+        } else if (Functions.clusterSize > 0) {
+            planned = findHierarchicalPath(start, target);
+        } else {
+            return findPath(start, target, path);
+        }
+        System.arraycopy(planned, 0, path, 0, planned.length);
+        return planned.length;
+    }
+
+    /**
+     * Finds a path with the hierarchical search; when verifying, a path that differs from the
+     * exact search is counted and replaced by the exact one.
+     */
+    int[] findHierarchicalPath(int start, int target) {
+        if (hierarchicalSearch == null) hierarchicalSearch = new HierarchicalSearch(grid, Functions.clusterSize);
+        int[] path = hierarchicalSearch.findPath(start, target);
+        if (Functions.verifyHierarchical) {
+            int[] exactPath = findPath(start, target);
+            if (!Arrays.equals(path, exactPath)) {
+                HierarchicalSearch.mismatches.increment();
+                return exactPath;
+            }
+        }
+        return path;
+    }
+
+    /**
+     * Finds the fastest path with the search selected for this run.
+     */
+    int[] findPath(int start, int target) {
+        return Arrays.copyOf(scratchPath(), findPath(start, target, scratchPath()));
+    }
+
+    /**
+     * Finds the fastest path into the given array, as PathSearch.findPath does. Dijkstra's
+     * trees are cached when a cache is configured; the other searches do not grow whole trees.
+     *
+     * @return The number of cells of the path.
+     */
+    int findPath(int start, int target, int[] path) {
+        if (treeCache != null && !Functions.goalDirected && !Functions.bidirectional) {
+            return treeCache.findPath(search(), start, target, path);
+        }
+        return search().findPath(start, target, null, path);
+    }
+
+    private int[] scratchPath() {
+        if (scratchPath == null) scratchPath = new int[grid.maxPathLength()];
+        return scratchPath;
+    }
+
+    /**
+     * Returns the search of the simulation thread.
+     */
+    PathSearch search() {
+        if (search == null) {
+            search = new PathSearch(grid, Functions.queueKind);
+        }
+        search.landmarks = landmarks;
+        return search;
+    }
+
+    /**
+     * Handles wizard's help by selecting the best option based on future path times.
+     */
+    int handleWizardHelp(ArrayList<Integer> options, int current, int nextObjective) {
+        long startTime = Metrics.start();
+        if (Metrics.enabled) Metrics.optionsEvaluated.add(options.size());
+
+        int bestOption;
+        if (hierarchicalSearch == null) {
+            bestOption = evaluateWizardHelp(options, current, nextObjective);
+        } else {
+            // The evaluation can leave cells passable, which the hierarchical search has to know about
+            int[][] leftPassable = leftPassable(options);
+            bestOption = evaluateWizardHelp(options, current, nextObjective);
+            for (int[] cells : leftPassable) {
+                hierarchicalSearch.cellsChanged(cells);
+            }
+        }
+        Metrics.end(Metrics.Phase.HELP, startTime);
+        return bestOption;
+    }
+
+    private int evaluateWizardHelp(ArrayList<Integer> options, int current, int nextObjective) {
+        // Two distance fields only pay off against three or more separate searches
+        if (Functions.scoreHelpWithFields && options.size() > 2) {
+            if (helpScorer == null) helpScorer = new HelpOptionScorer(grid, typeIndex, Functions.queueKind);
+            int chosen = helpScorer.chooseOption(options, current, nextObjective);
+            if (chosen != HelpOptionScorer.NOT_SCORED) return chosen;
+        }
+        if (Functions.parallelWizardHelp && options.size() > 1) {
+            return handleWizardHelpInParallel(options, current, nextObjective);
+        }
+
+        int bestOption = -1;
+        double minTotalTime = Double.MAX_VALUE;
+
+        for (int option : options) {
+            makePassable(option);
+            double totalTime = calculatePathTime(current, nextObjective);
+
+            if (totalTime < minTotalTime) {
+                minTotalTime = totalTime;
+                bestOption = option;
+            }
+            revertPassable(option);
+        }
+        return bestOption;
+    }
+
+    /**
+     * Evaluates the wizard's help options concurrently, each on its own overlay of the map.
+     * The overlay of an option holds what makePassable and the earlier options' reverts
+     * would have left on the map, so the choice is the same as in the serial evaluation.
+     */
+    int handleWizardHelpInParallel(ArrayList<Integer> options, int current, int nextObjective) {
+        int optionCount = options.size();
+        int[][] leftPassable = leftPassable(options);
+        for (int option : options) {
+            checkLandmarks(typeIndex.cells(option), typeIndex.count(option));
+        }
+
+        double[] totalTimes = new double[optionCount];
+        IntStream.range(0, optionCount).parallel().forEach(k -> {
+            PassabilityOverlay overlay = new PassabilityOverlay(grid);
+            for (int j = 0; j < k; j++) {
+                for (int cell : leftPassable[j]) overlay.setRevealed(cell, (byte) 0);
+            }
+            int type = options.get(k);
+            int[] cells = typeIndex.cells(type);
+            int count = typeIndex.count(type);
+            for (int i = 0; i < count; i++) {
+                overlay.setRevealed(cells[i], (byte) 0);
+            }
+            PathSearch pathSearch = workerSearch.get();
+            pathSearch.landmarks = landmarks;
+            totalTimes[k] = calculatePathTime(pathSearch, overlay, current, nextObjective);
+        });
+
+        // Apply what the serial evaluation leaves behind on the map
+        for (int[] cells : leftPassable) {
+            for (int cell : cells) grid.setRevealed(cell, (byte) 0);
+            if (treeCache != null) treeCache.cellsChanged(cells);
+        }
+
+        // First strictly smaller time wins, as in the serial evaluation
+        int bestOption = -1;
+        double minTotalTime = Double.MAX_VALUE;
+        for (int k = 0; k < optionCount; k++) {
+            if (totalTimes[k] < minTotalTime) {
+                minTotalTime = totalTimes[k];
+                bestOption = options.get(k);
+            }
+        }
+        return bestOption;
+    }
+
+    /**
+     * Returns, for each option, the cells that evaluating it leaves passable: revertPassable
+     * only restores explicitly revealed cells, so an option can leave other revealed cells of
+     * its type passable for the options evaluated after it.
+     */
+    int[][] leftPassable(ArrayList<Integer> options) {
+        int[][] leftPassable = new int[options.size()][];
+        for (int k = 0; k < options.size(); k++) {
+            int type = options.get(k);
+            int[] cells = typeIndex.cells(type);
+            int count = typeIndex.count(type);
+            int[] left = new int[count];
+            int leftCount = 0;
+            for (int i = 0; i < count; i++) {
+                if (grid.isBlocked(cells[i]) && !grid.isRevealed(cells[i])) left[leftCount++] = cells[i];
+            }
+            leftPassable[k] = Arrays.copyOf(left, leftCount);
+        }
+        return leftPassable;
+    }
+
+    /**
+     * Calculates the total path time between two cells.
+     */
+    double calculatePathTime(int start, int target) {
+        return pathTime(scratchPath(), findPath(start, target, scratchPath()));
+    }
+
+    /**
+     * Calculates the total path time between two cells with the given search and overlay.
+     */
+    double calculatePathTime(PathSearch pathSearch, PassabilityOverlay overlay, int start, int target) {
+        int[] path = pathSearch.findPath(start, target, overlay);
+        return pathTime(path, path.length);
+    }
+
+    private double pathTime(int[] path, int length) {
+        if (length == 0) return Double.MAX_VALUE;
+        return pathTime(path, 0, length);
+    }
+
+    // Time along the path from index from to its end
+    private double pathTime(int[] path, int from, int length) {
+        double totalTime = 0.0;
+        for (int i = from + 1; i < length; i++) {
+            totalTime += grid.edgeTime(path[i - 1], path[i]);
+        }
+        return totalTime;
+    }
+
+    /**
+     * Temporarily makes nodes of a certain type passable.
+     */
+    void makePassable(int type) {
+        int[] cells = typeIndex.cells(type);
+        int count = typeIndex.count(type);
+        for (int i = 0; i < count; i++) {
+            grid.setRevealed(cells[i], (byte) 0);
+        }
+        if (treeCache != null) treeCache.cellsChanged(cells, count);
+        checkLandmarks(cells, count);
+    }
+
+    /**
+     * Reverts the temporary passable state of nodes of a certain type.
+     */
+    void revertPassable(int type) {
+        int[] cells = typeIndex.cells(type);
+        int count = typeIndex.count(type);
+        for (int i = 0; i < count; i++) {
+            if (grid.isRevealed(cells[i])) {
+                grid.setRevealed(cells[i], (byte) 1);
+            }
+        }
+        if (treeCache != null) treeCache.cellsChanged(cells, count);
+    }
+
+    /**
+     * Applies permanent changes to the map for a specific node type.
+     */
+    void makeChanges(int bestOption) {
+        int[] cells = typeIndex.cells(bestOption);
+        int count = typeIndex.count(bestOption);
+        for (int i = 0; i < count; i++) {
+            grid.setType(cells[i], 0);
+        }
+        if (hierarchicalSearch != null) hierarchicalSearch.cellsChanged(cells, count);
+        if (treeCache != null) treeCache.cellsChanged(cells, count);
+        typeIndex.retype(bestOption, 0);
+
+        // Tables dropped during the help are computed again for the map as it is now
+        if (landmarksOutdated) {
+            landmarks = Landmarks.compute(grid, Functions.landmarkCount);
+            landmarksOutdated = false;
+        }
+
+        // Cells in the last disc may have changed, so the next reveal checks the whole disc
+        lastRevealCenter = -1;
+    }
+
+    /**
+     * Tells the searches of this mission about cells of its map changed by another mission
+     * sharing the map.
+     */
+    void cellsChanged(int[] cells, int count) {
+        if (hierarchicalSearch != null) hierarchicalSearch.cellsChanged(cells, count);
+        if (treeCache != null) treeCache.cellsChanged(cells, count);
+    }
+
+    // Drops the landmark tables if opening these cells would make their bounds inadmissible
+    private void checkLandmarks(int[] cells, int count) {
+        if (landmarks != null && !landmarks.covers(cells, count)) {
+            landmarks = null;
+            landmarksOutdated = true;
+        }
+    }
+
+    /**
+     * Opens the output file, which the simulation writes to as it goes.
+     */
+    void openOutput(String outputFile) {
+        outputLog = new OutputLog(outputFile, Functions.backgroundOutput);
+    }
+
+    /**
+     * Writes the rest of the output log and closes the file.
+     */
+    void writeOutput(String outputFile) {
+        long startTime = Metrics.start();
+        try {
+            outputLog.close();
+            System.out.println("Output written successfully to: " + outputFile);
+        } catch (IOException e) {
+            System.err.println("Error writing to file: " + e.getMessage());
+        }
+        Metrics.end(Metrics.Phase.OUTPUT, startTime);
+    }
+
+    /**
+     * Reveals nodes within a given radius of the current cell. After a move to a neighbouring
+     * cell only the leading edge of the disc is checked, since the rest was revealed by the
+     * previous call.
+     *
+     * @return The number of cells that became impassable because of this call, which are
+     *         exactly the first cells of newlyRevealed.
+     */
+    int revealNodes(int currentCell, int radius) {
+        long startTime = Metrics.start();
+        if (revealMask == null || revealMask.radius != radius) {
+            revealMask = new DiscMask(radius);
+            lastRevealCenter = -1;
+        }
+        newlyRevealedCount = 0;
+
+        int currentX = grid.x(currentCell);
+        int currentY = grid.y(currentCell);
+        int stepX = 0;
+        int stepY = 0;
+        if (lastRevealCenter != -1) {
+            stepX = currentX - grid.x(lastRevealCenter);
+            stepY = currentY - grid.y(lastRevealCenter);
+        }
+
+        if (radius < 0) {
+            // Empty disc
+        } else if (Math.abs(stepX) + Math.abs(stepY) == 1) {
+            revealLeadingEdge(currentX, currentY, stepX, stepY);
+        } else if (currentCell != lastRevealCenter) {
+            revealDisc(currentX, currentY);
+        }
+        lastRevealCenter = currentCell;
+        if (treeCache != null) treeCache.cellsChanged(newlyRevealed, newlyRevealedCount);
+        if (targetField != null && newlyRevealedCount > 0) targetField.loosen();
+        if (hierarchicalSearch != null) hierarchicalSearch.cellsChanged(newlyRevealed, newlyRevealedCount);
+        if (Metrics.enabled) {
+            Metrics.cellsRevealed.add(newlyRevealedCount);
+            Metrics.end(Metrics.Phase.REVEAL, startTime);
+        }
+        return newlyRevealedCount;
+    }
+
+    // Checks every cell of the disc, one span of consecutive y per column
+    private void revealDisc(int currentX, int currentY) {
+        int radius = revealMask.radius;
+        for (int x = Math.max(currentX - radius, 0); x <= Math.min(currentX + radius, grid.width - 1); x++) {
+            int halfWidth = revealMask.halfWidth(x - currentX);
+            int columnStart = grid.cellOf(x, 0);
+            int fromY = Math.max(currentY - halfWidth, 0);
+            int toY = Math.min(currentY + halfWidth, grid.height - 1);
+            for (int cell = columnStart + fromY; cell <= columnStart + toY; cell++) {
+                revealCell(cell);
+            }
+        }
+    }
+
+    // Checks the cells that entered the disc when its center moved by (stepX, stepY)
+    private void revealLeadingEdge(int currentX, int currentY, int stepX, int stepY) {
+        int radius = revealMask.radius;
+        for (int offset = -radius; offset <= radius; offset++) {
+            int halfWidth = revealMask.halfWidth(offset);
+            int x = stepX == 0 ? currentX + offset : currentX + stepX * halfWidth;
+            int y = stepX == 0 ? currentY + stepY * halfWidth : currentY + offset;
+            if (x >= 0 && y >= 0 && x < grid.width && y < grid.height) {
+                revealCell(grid.cellOf(x, y));
+            }
+        }
+    }
+
+    private void revealCell(int cell) {
+        if (grid.type(cell) >= 2) {
+            if (!grid.isBlocked(cell)) {
+                if (newlyRevealedCount == newlyRevealed.length) {
+                    newlyRevealed = Arrays.copyOf(newlyRevealed, newlyRevealedCount * 2);
+                }
+                newlyRevealed[newlyRevealedCount++] = cell;
+            }
+            grid.markRevealed(cell);
+            grid.setRevealed(cell, (byte) 1);
+        }
+    }
+
+    /**
+     * Marks the cells of a path in the membership bitset.
+     *
+     * @return Whether any cell of the path is already impassable.
+     */
+    boolean markPath(long[] members, int[] path, int length) {
+        boolean blocked = false;
+        for (int i = 0; i < length; i++) {
+            int cell = path[i];
+            members[cell >>> 6] |= 1L << cell;
+            if (grid.type(cell) >= 2 && grid.isBlocked(cell)) blocked = true;
+        }
+        return blocked;
+    }
+
+    void unmarkPath(long[] members, int[] path, int length) {
+        for (int i = 0; i < length; i++) {
+            members[path[i] >>> 6] &= ~(1L << path[i]);
+        }
+    }
+
+    // Whether any of the first count cells is on the marked path
+    boolean crossesPath(long[] members, int[] cells, int count) {
+        return crossesPath(members, cells, 0, count);
+    }
+
+    // Whether any of the cells from index from up to index to is on the marked path
+    boolean crossesPath(long[] members, int[] cells, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if ((members[cells[i] >>> 6] & (1L << cells[i])) != 0) return true;
+        }
+        return false;
+    }
+}
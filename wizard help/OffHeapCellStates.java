@@ -0,0 +1,142 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Cell types and revealed flags outside the Java heap. Tiles are cut from chunks of direct
+ * or memory-mapped pages as the cells in them are given types, so the heap only holds a
+ * reference per tile. A copy shares every tile with the states it was copied from, and
+ * whichever of the two first writes a tile gets its own copy of it, so a mission only pays
+ * for the tiles it changes.
+ */
+class OffHeapCellStates implements CellStates {
+    // A tile holds the types as ints, stored minus ABSENT like the heap tiles, then the
+    // revealed statuses, then the explicitly revealed flags, one byte each
+    private static final int REVEALED = Grid.TILE_SIZE * 4;
+    private static final int EXPLICIT = Grid.TILE_SIZE * 5;
+    private static final int TILE_BYTES = Grid.TILE_SIZE * 6;
+
+    // Tiles per chunk: as many as already allocated, within these bounds
+    private static final int MIN_CHUNK_TILES = 16;
+    private static final int MAX_CHUNK_TILES = 1024;
+
+    private final String storage;
+    private final ByteBuffer[] tiles; // Null until a cell in the tile exists
+    private final long[] shared;      // Tiles another copy may still read, copied before a write
+    private int allocatedTiles;
+
+    private ByteBuffer chunk;
+    private int chunkTiles;
+    private int chunkUsed;
+    private int ownTiles;
+
+    OffHeapCellStates(String storage, int cellCount) {
+        this.storage = storage;
+        tiles = new ByteBuffer[Grid.tileCount(cellCount)];
+        shared = new long[(tiles.length + 63) >>> 6];
+    }
+
+    private OffHeapCellStates(OffHeapCellStates states) {
+        storage = states.storage;
+        synchronized (states) {
+            tiles = states.tiles.clone();
+            allocatedTiles = states.allocatedTiles;
+            Arrays.fill(states.shared, -1L);
+        }
+        shared = new long[states.shared.length];
+        Arrays.fill(shared, -1L);
+    }
+
+    public CellStates copy() {
+        return new OffHeapCellStates(this);
+    }
+
+    public int allocatedTiles() {
+        return allocatedTiles;
+    }
+
+    public int type(int cell) {
+        ByteBuffer tile = tiles[cell >>> Grid.TILE_BITS];
+        return tile != null ? tile.getInt((cell & Grid.TILE_MASK) << 2) + Grid.ABSENT : Grid.ABSENT;
+    }
+
+    public void setType(int cell, int cellType) {
+        int tileIndex = cell >>> Grid.TILE_BITS;
+        ByteBuffer tile = tiles[tileIndex] != null ? writable(tileIndex) : allocateTile(tileIndex);
+        tile.putInt((cell & Grid.TILE_MASK) << 2, cellType - Grid.ABSENT);
+        tile.put(REVEALED + (cell & Grid.TILE_MASK), (byte) (cellType == 1 ? 1 : 0));
+    }
+
+    // Parsing threads can reach the same tile at once, so it is created under the lock
+    private synchronized ByteBuffer allocateTile(int tileIndex) {
+        if (tiles[tileIndex] != null) return tiles[tileIndex];
+        ByteBuffer tile = newTile();
+        shared[tileIndex >>> 6] &= ~(1L << tileIndex);
+        tiles[tileIndex] = tile;
+        allocatedTiles++;
+        return tile;
+    }
+
+    // The tile for a write, copied first if another copy may still read it
+    private ByteBuffer writable(int tileIndex) {
+        if ((shared[tileIndex >>> 6] & 1L << tileIndex) == 0) return tiles[tileIndex];
+        return copyTile(tileIndex);
+    }
+
+    private synchronized ByteBuffer copyTile(int tileIndex) {
+        ByteBuffer tile = newTile();
+        tile.put(0, tiles[tileIndex], 0, TILE_BYTES);
+        tiles[tileIndex] = tile;
+        shared[tileIndex >>> 6] &= ~(1L << tileIndex);
+        return tile;
+    }
+
+    // A zeroed tile from the current chunk, which reads as all absent
+    private ByteBuffer newTile() {
+        if (chunk == null || chunkUsed == chunkTiles) {
+            chunkTiles = Math.min(MAX_CHUNK_TILES, Math.max(MIN_CHUNK_TILES, ownTiles));
+            chunk = OffHeapPages.allocate(storage, chunkTiles * TILE_BYTES);
+            chunkUsed = 0;
+        }
+        ownTiles++;
+        return chunk.slice(chunkUsed++ * TILE_BYTES, TILE_BYTES).order(ByteOrder.nativeOrder());
+    }
+
+    public byte revealed(int cell) {
+        ByteBuffer tile = tiles[cell >>> Grid.TILE_BITS];
+        return tile != null ? tile.get(REVEALED + (cell & Grid.TILE_MASK)) : 0;
+    }
+
+    public boolean isOpen(int cell) {
+        ByteBuffer tile = tiles[cell >>> Grid.TILE_BITS];
+        int index = cell & Grid.TILE_MASK;
+        return tile != null && tile.getInt(index << 2) != 0 && tile.get(REVEALED + index) != 1;
+    }
+
+    public void setRevealed(int cell, byte value) {
+        writable(cell >>> Grid.TILE_BITS).put(REVEALED + (cell & Grid.TILE_MASK), value);
+    }
+
+    public boolean isRevealed(int cell) {
+        ByteBuffer tile = tiles[cell >>> Grid.TILE_BITS];
+        return tile != null && tile.get(EXPLICIT + (cell & Grid.TILE_MASK)) != 0;
+    }
+
+    public void markRevealed(int cell) {
+        writable(cell >>> Grid.TILE_BITS).put(EXPLICIT + (cell & Grid.TILE_MASK), (byte) 1);
+    }
+
+    public void copyRevealedTile(int tileIndex, byte[] destination) {
+        ByteBuffer tile = tiles[tileIndex];
+        if (tile != null) tile.get(REVEALED, destination, 0, Grid.TILE_SIZE);
+    }
+
+    public void copyRevealedFrom(CellStates states) {
+        OffHeapCellStates saved = (OffHeapCellStates) states;
+        for (int tile = 0; tile < tiles.length; tile++) {
+            // A tile both still share holds the saved statuses already
+            if (saved.tiles[tile] == null || saved.tiles[tile] == tiles[tile]) continue;
+            writable(tile).put(REVEALED, saved.tiles[tile], REVEALED, TILE_BYTES - REVEALED);
+        }
+    }
+}
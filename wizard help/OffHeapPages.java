@@ -0,0 +1,32 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Zero-filled pages outside the Java heap for the off-heap storage kinds.
+ */
+class OffHeapPages {
+    /**
+     * Allocates a page in native byte order: a direct buffer, which counts against
+     * -XX:MaxDirectMemorySize, or a mapping of a new temporary file, which is deleted right
+     * away and keeps its space until the page is collected.
+     */
+    static ByteBuffer allocate(String storage, int bytes) {
+        if (storage.equals("direct")) return ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+        try {
+            Path file = Files.createTempFile("wizard-pages", ".bin");
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                return channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes).order(ByteOrder.nativeOrder());
+            } finally {
+                Files.delete(file);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
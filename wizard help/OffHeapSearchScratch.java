@@ -0,0 +1,64 @@
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+
+/**
+ * Search state over every cell of the map outside the Java heap, for the off-heap storage
+ * kinds. Like OffHeapTravelTimes, each column is split into pages of 2^23 cells.
+ */
+class OffHeapSearchScratch extends SearchScratch {
+    private static final int PAGE_BITS = OffHeapTravelTimes.PAGE_BITS;
+    private static final int PAGE_MASK = (1 << PAGE_BITS) - 1;
+
+    private final DoubleBuffer[] distance;
+    private final IntBuffer[] parent;
+    // 2 * epoch once distance and parent are written in that epoch, plus 1 once settled
+    private final IntBuffer[] stamp;
+
+    OffHeapSearchScratch(String storage, int cellCount) {
+        super(cellCount);
+        int pageCount = (int) Math.max(1, ((long) cellCount + PAGE_MASK) >>> PAGE_BITS);
+        distance = new DoubleBuffer[pageCount];
+        parent = new IntBuffer[pageCount];
+        stamp = new IntBuffer[pageCount];
+        for (int page = 0; page < pageCount; page++) {
+            int length = Math.min(1 << PAGE_BITS, cellCount - (page << PAGE_BITS));
+            distance[page] = OffHeapPages.allocate(storage, length * 8).asDoubleBuffer();
+            parent[page] = OffHeapPages.allocate(storage, length * 4).asIntBuffer();
+            stamp[page] = OffHeapPages.allocate(storage, length * 4).asIntBuffer();
+        }
+    }
+
+    void clearStamps() {
+        for (IntBuffer page : stamp) {
+            for (int index = 0; index < page.capacity(); index++) page.put(index, 0);
+        }
+    }
+
+    double distance(int cell) {
+        return stamp[cell >>> PAGE_BITS].get(cell & PAGE_MASK) >> 1 == epoch
+                ? distance[cell >>> PAGE_BITS].get(cell & PAGE_MASK) : Double.MAX_VALUE;
+    }
+
+    double reachedDistance(int cell) {
+        return distance[cell >>> PAGE_BITS].get(cell & PAGE_MASK);
+    }
+
+    int parent(int cell) {
+        return stamp[cell >>> PAGE_BITS].get(cell & PAGE_MASK) >> 1 == epoch
+                ? parent[cell >>> PAGE_BITS].get(cell & PAGE_MASK) : -1;
+    }
+
+    void update(int cell, double cellDistance, int cellParent) {
+        stamp[cell >>> PAGE_BITS].put(cell & PAGE_MASK, epoch << 1);
+        distance[cell >>> PAGE_BITS].put(cell & PAGE_MASK, cellDistance);
+        parent[cell >>> PAGE_BITS].put(cell & PAGE_MASK, cellParent);
+    }
+
+    boolean isSettled(int cell) {
+        return stamp[cell >>> PAGE_BITS].get(cell & PAGE_MASK) == (epoch << 1 | 1);
+    }
+
+    void settle(int cell) {
+        stamp[cell >>> PAGE_BITS].put(cell & PAGE_MASK, epoch << 1 | 1);
+    }
+}
@@ -0,0 +1,103 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Travel times outside the Java heap, in pages of direct or memory-mapped buffers, so the
+ * heap and the garbage collector never see them. A buffer holds at most 2 GiB, so each of
+ * the two columns is split into pages of 2^23 cells. Mapped pages are backed by a file and
+ * paged in and out by the operating system, so maps larger than memory still work.
+ */
+class OffHeapTravelTimes implements TravelTimes {
+    static final int PAGE_BITS = 23;
+    private static final int PAGE_MASK = (1 << PAGE_BITS) - 1;
+
+    private final DoubleBuffer[] xPlus;
+    private final DoubleBuffer[] yPlus;
+
+    private OffHeapTravelTimes(DoubleBuffer[] xPlus, DoubleBuffer[] yPlus) {
+        this.xPlus = xPlus;
+        this.yPlus = yPlus;
+    }
+
+    /**
+     * Allocates both columns in direct buffers, which count against -XX:MaxDirectMemorySize.
+     */
+    static OffHeapTravelTimes allocateDirect(int cellCount) {
+        DoubleBuffer[][] columns = new DoubleBuffer[2][pageCount(cellCount)];
+        for (DoubleBuffer[] pages : columns) {
+            for (int page = 0; page < pages.length; page++) {
+                pages[page] = ByteBuffer.allocateDirect(pageLength(cellCount, page) * 8)
+                        .order(ByteOrder.nativeOrder()).asDoubleBuffer();
+            }
+        }
+        return new OffHeapTravelTimes(columns[0], columns[1]);
+    }
+
+    /**
+     * Maps both columns to a new temporary file, which is deleted right away; the mapping
+     * keeps its space until the process exits.
+     */
+    static OffHeapTravelTimes mapTemporary(int cellCount) throws IOException {
+        Path file = Files.createTempFile("travel-times", ".bin");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return map(channel, 0, cellCount, FileChannel.MapMode.READ_WRITE, null);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Maps the x + 1 column stored at the given offset of a file, followed by the y + 1
+     * column, both as little-endian doubles. Times mapped with MapMode.READ_ONLY cannot be
+     * set afterwards.
+     *
+     * @param checksum Updated with the mapped bytes in file order, or null.
+     */
+    static OffHeapTravelTimes map(FileChannel channel, long offset, int cellCount, FileChannel.MapMode mode,
+                                  CRC32 checksum) throws IOException {
+        DoubleBuffer[][] columns = new DoubleBuffer[2][pageCount(cellCount)];
+        for (DoubleBuffer[] pages : columns) {
+            for (int page = 0; page < pages.length; page++) {
+                long length = pageLength(cellCount, page) * 8L;
+                MappedByteBuffer bytes = channel.map(mode, offset, length);
+                bytes.order(ByteOrder.LITTLE_ENDIAN);
+                if (checksum != null) checksum.update(bytes.duplicate());
+                pages[page] = bytes.asDoubleBuffer();
+                offset += length;
+            }
+        }
+        return new OffHeapTravelTimes(columns[0], columns[1]);
+    }
+
+    public double xPlus(int cell) {
+        return xPlus[cell >>> PAGE_BITS].get(cell & PAGE_MASK);
+    }
+
+    public double yPlus(int cell) {
+        return yPlus[cell >>> PAGE_BITS].get(cell & PAGE_MASK);
+    }
+
+    public void setXPlus(int cell, double time) {
+        xPlus[cell >>> PAGE_BITS].put(cell & PAGE_MASK, time);
+    }
+
+    public void setYPlus(int cell, double time) {
+        yPlus[cell >>> PAGE_BITS].put(cell & PAGE_MASK, time);
+    }
+
+    private static int pageCount(int cellCount) {
+        return (int) Math.max(1, ((long) cellCount + PAGE_MASK) >>> PAGE_BITS);
+    }
+
+    private static int pageLength(int cellCount, int page) {
+        return Math.min(1 << PAGE_BITS, cellCount - (page << PAGE_BITS));
+    }
+}
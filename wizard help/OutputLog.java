@@ -0,0 +1,192 @@
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Output file written while the simulation runs. Lines are encoded into a fixed-size byte
+ * buffer that is flushed whenever it fills up, so memory use does not grow with the number
+ * of lines. With a background writer, full buffers are handed to a writer thread and the
+ * simulation continues in a spare buffer.
+ *
+ * Write errors do not interrupt the simulation: the first one is kept, further output is
+ * dropped, and the error is reported by close().
+ */
+class OutputLog {
+    private static final int BUFFER_BYTES = 1 << 16;
+    private static final int SPARE_BUFFERS = 2;
+
+    // Same line ending as BufferedWriter.newLine()
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(java.nio.charset.StandardCharsets.US_ASCII);
+
+    private OutputStream out;
+    private volatile IOException failure;
+
+    private byte[] buffer = new byte[BUFFER_BYTES];
+    private int size = 0;
+
+    // Digits of an integer, filled from the end
+    private final byte[] digits = new byte[11];
+
+    // Background writer: full buffers go to the writer thread and come back empty
+    private Thread writer;
+    private BlockingQueue<Chunk> fullChunks;
+    private BlockingQueue<byte[]> emptyBuffers;
+
+    /**
+     * Opens the output file; a file that cannot be opened is reported by close().
+     *
+     * @param background Whether full buffers are written by a separate thread.
+     */
+    OutputLog(String outputFile, boolean background) {
+        try {
+            out = new FileOutputStream(outputFile);
+        } catch (IOException e) {
+            failure = e;
+            return;
+        }
+
+        if (background) {
+            fullChunks = new ArrayBlockingQueue<>(SPARE_BUFFERS + 1);
+            emptyBuffers = new ArrayBlockingQueue<>(SPARE_BUFFERS + 1);
+            for (int i = 0; i < SPARE_BUFFERS; i++) {
+                emptyBuffers.add(new byte[BUFFER_BYTES]);
+            }
+            writer = new Thread(this::writeChunks, "output-writer");
+            writer.setDaemon(true);
+            writer.start();
+        }
+    }
+
+    OutputLog append(String text) {
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            put((byte) text.charAt(i));
+        }
+        return this;
+    }
+
+    OutputLog append(char c) {
+        put((byte) c);
+        return this;
+    }
+
+    OutputLog append(int value) {
+        // Digits are produced from the negative value so Integer.MIN_VALUE needs no special case
+        boolean negative = value < 0;
+        int remaining = negative ? value : -value;
+        int start = digits.length;
+        do {
+            digits[--start] = (byte) ('0' - remaining % 10);
+            remaining /= 10;
+        } while (remaining != 0);
+
+        if (negative) put((byte) '-');
+        for (int i = start; i < digits.length; i++) {
+            put(digits[i]);
+        }
+        return this;
+    }
+
+    void endLine() {
+        for (byte b : LINE_SEPARATOR) {
+            put(b);
+        }
+    }
+
+    /**
+     * Writes the remaining output and closes the file.
+     *
+     * @throws IOException The first error that occurred while writing.
+     */
+    void close() throws IOException {
+        if (out != null) {
+            flush();
+            if (writer != null) {
+                handOver(new Chunk(null, 0)); // Tells the writer thread to stop
+                try {
+                    writer.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            try {
+                out.close();
+            } catch (IOException e) {
+                if (failure == null) failure = e;
+            }
+            out = null;
+        }
+        if (failure != null) throw failure;
+    }
+
+    private void put(byte b) {
+        if (size == buffer.length) flush();
+        buffer[size++] = b;
+    }
+
+    private void flush() {
+        if (size == 0) return;
+        if (writer == null) {
+            write(buffer, size);
+        } else {
+            handOver(new Chunk(buffer, size));
+            buffer = takeEmptyBuffer();
+        }
+        size = 0;
+    }
+
+    private void write(byte[] bytes, int length) {
+        if (failure != null || out == null) return;
+        try {
+            out.write(bytes, 0, length);
+        } catch (IOException e) {
+            failure = e;
+        }
+    }
+
+    // Body of the writer thread
+    private void writeChunks() {
+        while (true) {
+            Chunk chunk;
+            try {
+                chunk = fullChunks.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (chunk.bytes == null) return;
+            write(chunk.bytes, chunk.length);
+            emptyBuffers.add(chunk.bytes);
+        }
+    }
+
+    private void handOver(Chunk chunk) {
+        try {
+            fullChunks.put(chunk);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while writing output", e);
+        }
+    }
+
+    private byte[] takeEmptyBuffer() {
+        try {
+            return emptyBuffers.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while writing output", e);
+        }
+    }
+
+    // Filled buffer waiting for the writer thread; a null buffer ends the thread
+    private static class Chunk {
+        final byte[] bytes;
+        final int length;
+
+        Chunk(byte[] bytes, int length) {
+            this.bytes = bytes;
+            this.length = length;
+        }
+    }
+}
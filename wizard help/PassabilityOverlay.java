@@ -0,0 +1,33 @@
+/**
+ * Copy-on-write view of the grid's revealed flags.
+ * Reads fall through to the shared grid until a tile of cells is first written,
+ * at which point only that tile is copied, so the grid itself is never modified.
+ */
+class PassabilityOverlay {
+    private final Grid grid;
+    private final byte[][] tiles; // Copied tiles, null where the grid is still shared
+
+    PassabilityOverlay(Grid grid) {
+        this.grid = grid;
+        this.tiles = new byte[Grid.tileCount(grid.cellCount())][];
+    }
+
+    // Revealed status of a cell as seen through the overlay
+    byte revealed(int cell) {
+        byte[] tile = tiles[cell >>> Grid.TILE_BITS];
+        return tile != null ? tile[cell & Grid.TILE_MASK] : grid.revealed(cell);
+    }
+
+    // Changes the revealed status of a cell in the overlay only
+    void setRevealed(int cell, byte value) {
+        int tileIndex = cell >>> Grid.TILE_BITS;
+        byte[] tile = tiles[tileIndex];
+        if (tile == null) {
+            // Copy the tile from the grid on the first write
+            tile = new byte[Grid.TILE_SIZE];
+            grid.copyRevealedTile(tileIndex, tile);
+            tiles[tileIndex] = tile;
+        }
+        tile[cell & Grid.TILE_MASK] = value;
+    }
+}
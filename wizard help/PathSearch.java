@@ -0,0 +1,334 @@
+import java.util.Arrays;
+
+/**
+ * Dijkstra and A* searches over the grid, each instance with its own scratch state
+ * so that several searches can run at the same time. Passability is read through an
+ * overlay when one is given, otherwise straight from the grid.
+ */
+class PathSearch {
+    private final Grid grid;
+    private final SearchQueue queue;         // Queue of A*, and of Dijkstra unless it is the binary heap
+    private final SearchQueue dijkstraQueue;
+
+    // Landmark tables tightening the A* bound, null to use the grid distance alone
+    Landmarks landmarks;
+
+    // Path written by the array-returning findPath before it is copied, created on first use
+    private int[] pathBuffer;
+
+    // Search scratch: distance from the source, parent cell and settled flag
+    final SearchScratch scratch;
+
+    // Cells settled by the last Dijkstra search in settling order, recorded only when asked
+    boolean recordSettled;
+    int[] settledCells = new int[64];
+    int settledCount;
+
+    // Scratch of the backward half of the bidirectional search, created on first use:
+    // distance to the target, next cell towards the target as parent, and settled flag
+    private SearchScratch backward;
+    private CustomHeap forwardQueue;
+    private CustomHeap backwardQueue;
+
+    PathSearch(Grid grid, String queueKind) {
+        this.grid = grid;
+        this.scratch = SearchScratch.create(grid);
+        this.queue = Functions.newQueue(queueKind, grid.cellCount());
+        // The binary heap keys Dijkstra's entries by current distance, which keeps the order
+        // of equal distances, and so the choice between equally fast paths, of the original
+        this.dijkstraQueue = queueKind.equals("binary") ? new CustomHeap(scratch) : queue;
+    }
+
+    /**
+     * Finds the fastest path with the search selected for this run.
+     */
+    int[] findPath(int start, int target, PassabilityOverlay overlay) {
+        if (pathBuffer == null) pathBuffer = new int[grid.maxPathLength()];
+        return Arrays.copyOf(pathBuffer, findPath(start, target, overlay, pathBuffer));
+    }
+
+    /**
+     * Finds the fastest path without allocating: the path is written to the start of the given
+     * array, which must hold as many cells as the map.
+     *
+     * @return The number of cells of the path, 0 if there is no target.
+     */
+    int findPath(int start, int target, PassabilityOverlay overlay, int[] path) {
+        if (Functions.bidirectional) return bidirectional(start, target, overlay, path);
+        return Functions.goalDirected ? aStar(start, target, overlay, path) : dijkstra(start, target, overlay, path);
+    }
+
+    /**
+     * Implements Dijkstra's algorithm to find the shortest path between two cells.
+     */
+    int dijkstra(int start, int target, PassabilityOverlay overlay, int[] path) {
+        // Start a new search epoch; cells of earlier searches count as unreached
+        long startTime = Metrics.start();
+        resetSearch();
+        long settled = 0;
+        long inserts = 1;
+        long stale = 0;
+        settledCount = 0;
+
+        scratch.update(start, 0, -1);
+        dijkstraQueue.insert(start, 0);
+
+        while (!dijkstraQueue.isEmpty()) {
+            int current = dijkstraQueue.extractMin();
+
+            // Skip if already visited
+            if (scratch.isSettled(current)) {
+                stale++;
+                continue;
+            }
+            scratch.settle(current);
+            settled++;
+            if (recordSettled) recordSettled(current);
+
+            // Explore neighbors
+            for (int direction = 0; direction < 4; direction++) {
+                int neighbor = grid.neighbour(current, direction);
+
+                // Skip if the neighbor is off the grid, impassable or visited
+                if (neighbor == -1 || !isOpen(neighbor, overlay) || scratch.isSettled(neighbor)) continue;
+
+                double travelTime = grid.travelTime(current, direction);
+
+                if (travelTime > 0) { // Valid edge exists
+                    double newDist = scratch.distance(current) + travelTime;
+                    if (newDist < scratch.distance(neighbor)) {
+                        scratch.update(neighbor, newDist, current);
+                        dijkstraQueue.insert(neighbor, newDist); // Update priority queue
+                        inserts++;
+                    }
+                }
+            }
+        }
+        Functions.nodesSettled.add(settled);
+        Metrics.search("dijkstra", start, target, settled, inserts, stale, startTime);
+        return writePath(target, path); // Path not found
+    }
+
+    /**
+     * Goal-directed A* search that stops as soon as the target is settled.
+     * The heuristic (smallest travel time times grid distance, or the landmark bound when
+     * that is larger) never overestimates, so the path is the same one Dijkstra finds.
+     */
+    int aStar(int start, int target, PassabilityOverlay overlay, int[] path) {
+        if (target == -1) return 0;
+
+        // Start a new search epoch; cells of earlier searches count as unreached
+        long startTime = Metrics.start();
+        resetSearch();
+        long settled = 0;
+        long inserts = 1;
+        long stale = 0;
+
+        scratch.update(start, 0, -1);
+        queue.insert(start, heuristic(start, target));
+
+        while (!queue.isEmpty()) {
+            int current = queue.extractMin();
+
+            // Skip if already visited
+            if (scratch.isSettled(current)) {
+                stale++;
+                continue;
+            }
+            scratch.settle(current);
+            settled++;
+
+            // The target's distance is final once it is settled
+            if (current == target) break;
+
+            // Explore neighbors
+            for (int direction = 0; direction < 4; direction++) {
+                int neighbor = grid.neighbour(current, direction);
+
+                // Skip if the neighbor is off the grid, impassable or visited
+                if (neighbor == -1 || !isOpen(neighbor, overlay) || scratch.isSettled(neighbor)) continue;
+
+                double travelTime = grid.travelTime(current, direction);
+
+                if (travelTime > 0) { // Valid edge exists
+                    double newDist = scratch.distance(current) + travelTime;
+                    if (newDist < scratch.distance(neighbor)) {
+                        scratch.update(neighbor, newDist, current);
+                        queue.insert(neighbor, newDist + heuristic(neighbor, target)); // Update priority queue
+                        inserts++;
+                    }
+                }
+            }
+        }
+        Functions.nodesSettled.add(settled);
+        Metrics.search("astar", start, target, settled, inserts, stale, startTime);
+        return writePath(target, path);
+    }
+
+    /**
+     * Bidirectional Dijkstra: one frontier grows from the start and one from the target over
+     * the same moves reversed, always expanding the side with the smaller key. The search stops
+     * once the two smallest keys add up to at least the best meeting found, since no path
+     * through unsettled cells can then be faster. A move enters its destination, so the
+     * backward side only expands cells that can be entered, and reaches a blocked start last.
+     */
+    int bidirectional(int start, int target, PassabilityOverlay overlay, int[] path) {
+        if (target == -1) return 0;
+
+        long startTime = Metrics.start();
+        resetSearch();
+        resetBackwardSearch();
+        if (start == target || !grid.exists(target) || isBlocked(target, overlay)) {
+            return writePath(target, path); // The start itself, or unreachable
+        }
+        long settled = 0;
+        long inserts = 2;
+        long stale = 0;
+
+        double best = Double.MAX_VALUE;
+        int meetFrom = -1; // Fastest path found: start .. meetFrom, then meetTo .. target
+        int meetTo = -1;
+
+        scratch.update(start, 0, -1);
+        forwardQueue.insert(start, 0);
+        backward.update(target, 0, -1);
+        backwardQueue.insert(target, 0);
+
+        while (!forwardQueue.isEmpty() && !backwardQueue.isEmpty()) {
+            if (forwardQueue.peekKey() + backwardQueue.peekKey() >= best) break;
+
+            if (forwardQueue.peekKey() <= backwardQueue.peekKey()) {
+                int current = forwardQueue.extractMin();
+                if (scratch.isSettled(current)) {
+                    stale++;
+                    continue;
+                }
+                scratch.settle(current);
+                settled++;
+
+                for (int direction = 0; direction < 4; direction++) {
+                    int neighbor = grid.neighbour(current, direction);
+                    if (neighbor == -1 || !isOpen(neighbor, overlay)) continue;
+
+                    double travelTime = grid.travelTime(current, direction);
+                    if (travelTime <= 0) continue;
+
+                    double newDist = scratch.distance(current) + travelTime;
+                    double toTarget = backward.distance(neighbor);
+                    if (toTarget != Double.MAX_VALUE && newDist + toTarget < best) {
+                        best = newDist + toTarget;
+                        meetFrom = current;
+                        meetTo = neighbor;
+                    }
+                    if (!scratch.isSettled(neighbor) && newDist < scratch.distance(neighbor)) {
+                        scratch.update(neighbor, newDist, current);
+                        forwardQueue.insert(neighbor, newDist);
+                        inserts++;
+                    }
+                }
+            } else {
+                int current = backwardQueue.extractMin();
+                if (backward.isSettled(current)) {
+                    stale++;
+                    continue;
+                }
+                backward.settle(current);
+                settled++;
+
+                // Moving into a blocked start is not allowed, so nothing leads through it
+                if (current == start && isBlocked(start, overlay)) continue;
+
+                for (int direction = 0; direction < 4; direction++) {
+                    int neighbor = grid.neighbour(current, direction);
+                    if (neighbor == -1 || !grid.exists(neighbor)) continue;
+                    if (neighbor != start && isBlocked(neighbor, overlay)) continue;
+
+                    // Same edge in the opposite direction, stored once per pair of cells
+                    double travelTime = grid.travelTime(current, direction);
+                    if (travelTime <= 0) continue;
+
+                    double newDist = backward.distance(current) + travelTime;
+                    double fromStart = scratch.distance(neighbor);
+                    if (fromStart != Double.MAX_VALUE && fromStart + newDist < best) {
+                        best = fromStart + newDist;
+                        meetFrom = neighbor;
+                        meetTo = current;
+                    }
+                    if (!backward.isSettled(neighbor) && newDist < backward.distance(neighbor)) {
+                        backward.update(neighbor, newDist, current);
+                        backwardQueue.insert(neighbor, newDist);
+                        inserts++;
+                    }
+                }
+            }
+        }
+        Functions.nodesSettled.add(settled);
+        Metrics.search("bidirectional", start, target, settled, inserts, stale, startTime);
+
+        if (meetFrom == -1) return writePath(target, path); // Path not found
+        int length = writePath(meetFrom, path);
+        for (int cell = meetTo; cell != -1; cell = backward.parent(cell)) {
+            path[length++] = cell;
+        }
+        return length;
+    }
+
+    /**
+     * Lower bound on the travel time between two cells.
+     */
+    double heuristic(int cell, int target) {
+        double bound = grid.minTravelTime * (Math.abs(grid.x(cell) - grid.x(target)) + Math.abs(grid.y(cell) - grid.y(target)));
+        return landmarks != null ? Math.max(bound, landmarks.lowerBound(cell, target)) : bound;
+    }
+
+    /**
+     * Reconstructs the path from the start cell to the destination into the given array.
+     *
+     * @return The number of cells of the path.
+     */
+    int writePath(int destination, int[] path) {
+        int length = 0;
+        for (int cell = destination; cell != -1; cell = scratch.parent(cell)) {
+            length++;
+        }
+
+        // Fill the path from the back so it runs from start to destination
+        int end = length;
+        for (int cell = destination; cell != -1; cell = scratch.parent(cell)) {
+            path[--end] = cell;
+        }
+        return length;
+    }
+
+    private void recordSettled(int cell) {
+        if (settledCount == settledCells.length) settledCells = Arrays.copyOf(settledCells, settledCount * 2);
+        settledCells[settledCount++] = cell;
+    }
+
+    private boolean isOpen(int cell, PassabilityOverlay overlay) {
+        return overlay != null ? grid.exists(cell) && overlay.revealed(cell) != 1 : grid.isOpen(cell);
+    }
+
+    private boolean isBlocked(int cell, PassabilityOverlay overlay) {
+        return (overlay != null ? overlay.revealed(cell) : grid.revealed(cell)) == 1;
+    }
+
+    // Starts a new epoch of the backward scratch, creating it on first use
+    private void resetBackwardSearch() {
+        if (backward == null) {
+            backward = SearchScratch.create(grid);
+            forwardQueue = new CustomHeap();
+            backwardQueue = new CustomHeap();
+        }
+        backward.reset();
+        forwardQueue.clear();
+        backwardQueue.clear();
+    }
+
+    // Starts a new epoch of the search scratch before a new search
+    private void resetSearch() {
+        scratch.reset();
+        queue.clear();
+        dijkstraQueue.clear();
+    }
+}
@@ -0,0 +1,247 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Shortest-path trees of recent Dijkstra searches on one map, keyed by source cell and the
+ * map version they were grown at. Every cell whose passability may have changed is appended
+ * to a journal, and the journal length is the version. A query from a cached source is
+ * answered from the tree without a search when the changes since its version cannot affect
+ * the answer: no cell of the cached path has become impassable, and every cell that may have
+ * opened is reached only after the target.
+ *
+ * A tree keeps only the cells its search reached: in arrays over the map when the search
+ * reached a large part of it, otherwise in a hash table sized to the reached cells, so
+ * caching a search costs time and memory in proportion to the cells it settled.
+ */
+class PathTreeCache {
+    // Longest journal kept; past it every tree is dropped and the journal starts over
+    private static final int MAX_JOURNAL = 1 << 20;
+
+    // Queries answered from a tree, and queries that needed a search
+    static final LongAdder hits = new LongAdder();
+    static final LongAdder misses = new LongAdder();
+
+    private final Grid grid;
+    private final int capacity;
+    private final boolean leastRecentlyUsed; // Evict the least recently used tree, else the oldest
+    private final ArrayList<Tree> trees = new ArrayList<>(); // Next to evict first
+
+    private int[] journal = new int[64];
+    private int version;
+
+    private static final class Tree {
+        int source;
+        int version;
+        boolean flat; // Whether the arrays over the map hold the tree, else the table
+
+        // Distance and parent of every cell, used when the search reached over 3/8 of the map
+        double[] distance;
+        int[] parent;
+
+        // Otherwise open addressing on the cell: reached cells, -1 in empty slots
+        int[] slotCells;
+        double[] slotDistance;
+        int[] slotParent;
+
+        // Stores the tree of the search's last Dijkstra run. Arrays are kept when the tree is
+        // replaced and only grow, so a warmed-up cache allocates nothing.
+        void fill(PathSearch search, int cellCount) {
+            int[] settled = search.settledCells;
+            int count = search.settledCount;
+            SearchScratch scratch = search.scratch;
+
+            // 12 bytes per cell of the map beat the table's 32 or more bytes per reached cell
+            flat = count > cellCount / 8 * 3;
+            if (flat) {
+                if (distance == null) {
+                    distance = new double[cellCount];
+                    parent = new int[cellCount];
+                }
+                Arrays.fill(distance, Double.MAX_VALUE);
+                Arrays.fill(parent, -1);
+                for (int i = 0; i < count; i++) {
+                    int cell = settled[i];
+                    distance[cell] = scratch.distance(cell);
+                    parent[cell] = scratch.parent(cell);
+                }
+                return;
+            }
+
+            int capacity = Integer.highestOneBit(Math.max(count, 1) * 2 - 1) << 1; // Under half full
+            if (slotCells == null || slotCells.length < capacity) {
+                slotCells = new int[capacity];
+                slotDistance = new double[capacity];
+                slotParent = new int[capacity];
+            }
+            Arrays.fill(slotCells, -1);
+            for (int i = 0; i < count; i++) {
+                int cell = settled[i];
+                int slot = slot(cell);
+                slotCells[slot] = cell;
+                slotDistance[slot] = scratch.distance(cell);
+                slotParent[slot] = scratch.parent(cell);
+            }
+        }
+
+        // Distance of a cell from the source, Double.MAX_VALUE if the search did not reach it
+        double distance(int cell) {
+            if (flat) return distance[cell];
+            int slot = slot(cell);
+            return slotCells[slot] == cell ? slotDistance[slot] : Double.MAX_VALUE;
+        }
+
+        // Parent of a cell, -1 for the source and cells the search did not reach
+        int parent(int cell) {
+            if (flat) return parent[cell];
+            int slot = slot(cell);
+            return slotCells[slot] == cell ? slotParent[slot] : -1;
+        }
+
+        // Slot holding the cell, or the empty slot where it would go
+        private int slot(int cell) {
+            int mask = slotCells.length - 1;
+            int hash = cell * 0x9E3779B9;
+            int slot = (hash ^ hash >>> 16) & mask;
+            while (slotCells[slot] != -1 && slotCells[slot] != cell) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+    }
+
+    PathTreeCache(Grid grid, int capacity, String eviction) {
+        if (!eviction.equals("lru") && !eviction.equals("fifo")) {
+            throw new IllegalArgumentException("Unknown eviction: " + eviction);
+        }
+        this.grid = grid;
+        this.capacity = capacity;
+        this.leastRecentlyUsed = eviction.equals("lru");
+    }
+
+    /**
+     * Records cells whose passability may have changed; cells that did not change only make
+     * the check of cached trees slower.
+     */
+    void cellsChanged(int[] cells, int count) {
+        if (trees.isEmpty()) return; // Nothing the journal could invalidate
+        if (version + count > MAX_JOURNAL) {
+            trees.clear();
+            version = 0;
+            return;
+        }
+        if (version + count > journal.length) {
+            journal = Arrays.copyOf(journal, Math.max(journal.length * 2, version + count));
+        }
+        System.arraycopy(cells, 0, journal, version, count);
+        version += count;
+    }
+
+    void cellsChanged(int[] cells) {
+        cellsChanged(cells, cells.length);
+    }
+
+    /**
+     * Drops the trees that new travel times on the given edges may have made wrong: trees
+     * that contain one of the edges, and trees in which an edge now reaches a cell no later
+     * than the tree does.
+     *
+     * @param ends The cells at both ends of each edge, 2 * count entries.
+     */
+    void edgesChanged(int[] ends, int count) {
+        for (int i = trees.size() - 1; i >= 0; i--) {
+            Tree tree = trees.get(i);
+            for (int k = 0; k < 2 * count; k += 2) {
+                int a = ends[k];
+                int b = ends[k + 1];
+                double travelTime = grid.edgeTime(a, b);
+                if (tree.parent(a) == b || tree.parent(b) == a
+                        || (travelTime > 0 && (reachesSooner(tree, a, b, travelTime) || reachesSooner(tree, b, a, travelTime)))) {
+                    trees.remove(i);
+                    break;
+                }
+            }
+        }
+    }
+
+    // Whether moving from one cell of the tree to an open neighbour is no slower than the tree
+    private boolean reachesSooner(Tree tree, int from, int to, double travelTime) {
+        double fromDistance = tree.distance(from);
+        return fromDistance != Double.MAX_VALUE && to != tree.source && grid.isOpen(to)
+                && fromDistance + travelTime <= tree.distance(to);
+    }
+
+    /**
+     * Finds the same path as Dijkstra's algorithm on the grid, from a cached tree when one is
+     * still valid, otherwise with the given search, whose tree is then cached. The path is
+     * written to the given array as in PathSearch.findPath.
+     *
+     * @return The number of cells of the path.
+     */
+    int findPath(PathSearch search, int start, int target, int[] path) {
+        if (target == -1) return 0;
+        for (int i = trees.size() - 1; i >= 0; i--) {
+            Tree tree = trees.get(i);
+            if (tree.source == start && answers(tree, target)) {
+                if (leastRecentlyUsed) trees.add(trees.remove(i));
+                hits.increment();
+                return writePath(tree, target, path);
+            }
+        }
+        misses.increment();
+
+        search.recordSettled = true;
+        int length = search.dijkstra(start, target, null, path);
+        search.recordSettled = false;
+        Tree tree = trees.size() < capacity ? new Tree() : trees.remove(0);
+        tree.source = start;
+        tree.version = version;
+        tree.fill(search, grid.cellCount());
+        trees.add(tree);
+        return length;
+    }
+
+    // Whether a search on the map as it is now would give the tree's path to the target
+    private boolean answers(Tree tree, int target) {
+        double targetDistance = tree.distance(target);
+
+        // Removing cells off the path cannot make another path faster
+        if (targetDistance != Double.MAX_VALUE) {
+            for (int cell = target; cell != tree.source; cell = tree.parent(cell)) {
+                if (grid.isBlocked(cell)) return false;
+            }
+        }
+
+        // A new path has to enter some opened cell from a cell the tree already reached, so
+        // it arrives there no earlier than the tree's distance of that cell plus the move
+        double firstArrival = Double.MAX_VALUE;
+        for (int j = tree.version; j < version; j++) {
+            int cell = journal[j];
+            // The tree reached it, so it was open then; the source is never entered
+            if (cell == tree.source || !grid.isOpen(cell)
+                    || tree.distance(cell) != Double.MAX_VALUE) continue;
+            for (int direction = 0; direction < 4; direction++) {
+                int neighbor = grid.neighbour(cell, direction);
+                if (neighbor == -1) continue;
+                double neighborDistance = tree.distance(neighbor);
+                if (neighborDistance == Double.MAX_VALUE) continue;
+                double travelTime = grid.travelTime(cell, direction);
+                if (travelTime > 0) firstArrival = Math.min(firstArrival, neighborDistance + travelTime);
+            }
+        }
+        if (targetDistance == Double.MAX_VALUE) return firstArrival == Double.MAX_VALUE;
+        return targetDistance < firstArrival;
+    }
+
+    private static int writePath(Tree tree, int target, int[] path) {
+        int length = 0;
+        for (int cell = target; cell != -1; cell = tree.parent(cell)) {
+            length++;
+        }
+        int end = length;
+        for (int cell = target; cell != -1; cell = tree.parent(cell)) {
+            path[--end] = cell;
+        }
+        return length;
+    }
+}
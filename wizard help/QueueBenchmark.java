@@ -0,0 +1,84 @@
+import java.util.Random;
+
+/**
+ * Compares the priority queues on a synthetic open grid.
+ * Usage: java QueueBenchmark [width] [height] [searches]
+ */
+class QueueBenchmark {
+    private static final String[] KINDS = {"binary", "dary", "radix"};
+
+    public static void main(String[] args) {
+        int width = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int height = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int searches = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+        Functions.grid = randomGrid(width, height, new Random(42));
+        Random random = new Random(7);
+        int[] sources = new int[searches];
+        for (int i = 0; i < searches; i++) {
+            sources[i] = random.nextInt(Functions.grid.cellCount());
+        }
+
+        System.out.printf("Grid %dx%d, %d full Dijkstra searches per queue%n", width, height, searches);
+        for (String kind : KINDS) {
+            // Warm up once, then measure
+            PathSearch search = new PathSearch(Functions.grid, kind);
+            runSearches(search, sources);
+            long startTime = System.nanoTime();
+            runSearches(search, sources);
+            double millis = (System.nanoTime() - startTime) / 1_000_000.0 / searches;
+            System.out.printf("  dijkstra  %-6s %10.2f ms/search%n", kind, millis);
+        }
+
+        // Raw queue operations with Dijkstra-like monotone keys
+        int operations = width * height;
+        for (String kind : KINDS) {
+            SearchQueue queue = Functions.newQueue(kind, operations);
+            runOperations(queue, operations);
+            long startTime = System.nanoTime();
+            long checksum = runOperations(queue, operations);
+            double nanos = (double) (System.nanoTime() - startTime) / operations;
+            System.out.printf("  insert+extractMin %-6s %8.1f ns/op (checksum %d)%n", kind, nanos, checksum);
+        }
+    }
+
+    private static void runSearches(PathSearch search, int[] sources) {
+        int[] path = new int[1];
+        for (int source : sources) {
+            search.dijkstra(source, source, null, path);
+        }
+    }
+
+    // Interleaves inserts and extractions; inserted keys lie a little above the last extracted key
+    private static long runOperations(SearchQueue queue, int operations) {
+        Random random = new Random(1);
+        double[] keys = new double[operations];
+        queue.clear();
+        long checksum = 0;
+        double lastKey = 0;
+        for (int cell = 0; cell < operations; cell++) {
+            keys[cell] = lastKey + 1 + random.nextDouble() * 9;
+            queue.insert(cell, keys[cell]);
+            if ((cell & 1) == 1) {
+                int min = queue.extractMin();
+                checksum += min;
+                lastKey = keys[min];
+            }
+        }
+        while (!queue.isEmpty()) {
+            checksum += queue.extractMin();
+        }
+        return checksum;
+    }
+
+    // Open grid where every adjacent pair has a random travel time between 1 and 10
+    private static Grid randomGrid(int width, int height, Random random) {
+        Grid grid = new Grid(width, height);
+        for (int cell = 0; cell < grid.cellCount(); cell++) {
+            grid.setType(cell, 0);
+            grid.times.setXPlus(cell, 1 + random.nextDouble() * 9);
+            grid.times.setYPlus(cell, 1 + random.nextDouble() * 9);
+        }
+        return grid;
+    }
+}
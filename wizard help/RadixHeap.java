@@ -0,0 +1,101 @@
+import java.util.Arrays;
+
+/**
+ * Monotone radix heap for non-negative priorities.
+ * Keys are bucketed by the highest bit in which they differ from the last extracted key,
+ * using the bit pattern of the double (which orders like the value for non-negative doubles).
+ * Inserted keys must not be smaller than the last extracted key.
+ */
+public class RadixHeap implements SearchQueue {
+    private static final int BUCKET_COUNT = 65;
+
+    private final long[][] bucketKeys = new long[BUCKET_COUNT][];
+    private final int[][] bucketCells = new int[BUCKET_COUNT][];
+    private final int[] bucketSizes = new int[BUCKET_COUNT];
+    private long last; // Bit pattern of the last extracted key
+    private int size;
+
+    // Constructor
+    public RadixHeap() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            bucketKeys[i] = new long[8];
+            bucketCells[i] = new int[8];
+        }
+        clear();
+    }
+
+    // Remove all elements from the heap
+    @Override
+    public void clear() {
+        Arrays.fill(bucketSizes, 0);
+        last = 0;
+        size = 0;
+    }
+
+    // Insert a cell with the given priority (a cell may be inserted several times)
+    @Override
+    public void insert(int cell, double key) {
+        // Rounding in heuristic estimates can undershoot the last key by an ulp
+        long bits = Math.max(Double.doubleToRawLongBits(key), last);
+        add(bucketOf(bits), bits, cell);
+        size++;
+    }
+
+    // Remove and return the cell with the smallest priority
+    @Override
+    public int extractMin() {
+        if (isEmpty()) {
+            throw new IllegalStateException("Heap is empty");
+        }
+
+        if (bucketSizes[0] == 0) {
+            // Find the first non-empty bucket and make its smallest key the new reference
+            int bucket = 1;
+            while (bucketSizes[bucket] == 0) bucket++;
+
+            long[] keys = bucketKeys[bucket];
+            int[] cells = bucketCells[bucket];
+            int count = bucketSizes[bucket];
+            long min = keys[0];
+            for (int i = 1; i < count; i++) {
+                min = Math.min(min, keys[i]);
+            }
+            last = min;
+
+            // Every element moves to a lower bucket
+            bucketSizes[bucket] = 0;
+            for (int i = 0; i < count; i++) {
+                add(bucketOf(keys[i]), keys[i], cells[i]);
+            }
+        }
+
+        size--;
+        return bucketCells[0][--bucketSizes[0]];
+    }
+
+    // Check if the heap is empty
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    // Get the size of the heap
+    public int getSize() {
+        return size;
+    }
+
+    private int bucketOf(long bits) {
+        return 64 - Long.numberOfLeadingZeros(bits ^ last);
+    }
+
+    private void add(int bucket, long bits, int cell) {
+        int count = bucketSizes[bucket];
+        if (count == bucketCells[bucket].length) {
+            bucketKeys[bucket] = Arrays.copyOf(bucketKeys[bucket], count * 2);
+            bucketCells[bucket] = Arrays.copyOf(bucketCells[bucket], count * 2);
+        }
+        bucketKeys[bucket][count] = bits;
+        bucketCells[bucket][count] = cell;
+        bucketSizes[bucket] = count + 1;
+    }
+}
@@ -0,0 +1,176 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+
+/**
+ * Writes a land, travel-time and mission file for a synthetic map. The type of a cell and
+ * the travel time of an edge are hashed from the seed and their position, so the same
+ * arguments always give the same files and maps of any size are written in constant memory.
+ * Usage: java ScenarioGenerator <prefix> [--width=N] [--height=N] [--walls=F] [--density=F]
+ *        [--types=N] [--radius=N] [--objectives=N] [--options=N] [--decimals=N] [--seed=N]
+ * writes <prefix>_land.txt, <prefix>_travel.txt and <prefix>_mission.txt.
+ */
+class ScenarioGenerator {
+    private int width = 100;
+    private int height = 100;
+    private double walls = 0.05;   // Share of type 1 cells
+    private double density = 0.25; // Share of hidden obstacles, types 2 to types + 1
+    private int types = 5;
+    private int radius = 2;
+    private int objectives = 10;
+    private int options = 3;       // Most help options offered at one objective
+    private int decimals = 6;      // Digits after the point of the travel times, 0 to 6
+    private long seed = 1;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            throw new IllegalArgumentException("Usage: java ScenarioGenerator <prefix> [--width=N] [--height=N] ...");
+        }
+        ScenarioGenerator generator = new ScenarioGenerator();
+        for (int i = 1; i < args.length; i++) {
+            int separator = args[i].indexOf('=');
+            if (separator == -1) throw new IllegalArgumentException("Option " + args[i] + " needs a value");
+            String value = args[i].substring(separator + 1);
+            switch (args[i].substring(0, separator)) {
+                case "--width":
+                    generator.width = Integer.parseInt(value);
+                    break;
+                case "--height":
+                    generator.height = Integer.parseInt(value);
+                    break;
+                case "--walls":
+                    generator.walls = Double.parseDouble(value);
+                    break;
+                case "--density":
+                    generator.density = Double.parseDouble(value);
+                    break;
+                case "--types":
+                    generator.types = Integer.parseInt(value);
+                    break;
+                case "--radius":
+                    generator.radius = Integer.parseInt(value);
+                    break;
+                case "--objectives":
+                    generator.objectives = Integer.parseInt(value);
+                    break;
+                case "--options":
+                    generator.options = Integer.parseInt(value);
+                    break;
+                case "--decimals":
+                    generator.decimals = Integer.parseInt(value);
+                    if (generator.decimals < 0 || generator.decimals > 6) {
+                        throw new IllegalArgumentException("--decimals must be between 0 and 6: " + value);
+                    }
+                    break;
+                case "--seed":
+                    generator.seed = Long.parseLong(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        long startTime = System.nanoTime();
+        generator.write(args[0]);
+        System.out.printf("Scenario %s written in %.3f seconds%n", args[0], (System.nanoTime() - startTime) / 1_000_000_000.0);
+    }
+
+    void write(String prefix) throws IOException {
+        writeLand(prefix + "_land.txt");
+        writeTravelTimes(prefix + "_travel.txt");
+        writeMission(prefix + "_mission.txt");
+    }
+
+    private void writeLand(String file) throws IOException {
+        OutputLog out = new OutputLog(file, true);
+        out.append(width).append(' ').append(height).endLine();
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                out.append(x).append(' ').append(y).append(' ').append(cellType(x, y)).endLine();
+            }
+        }
+        out.close();
+    }
+
+    // Every pair of adjacent cells gets a travel time between 1 and 10 with the given decimals;
+    // whole-number times make many paths equally fast
+    private void writeTravelTimes(String file) throws IOException {
+        OutputLog out = new OutputLog(file, true);
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                if (x + 1 < width) writeEdge(out, x, y, x + 1, y);
+                if (y + 1 < height) writeEdge(out, x, y, x, y + 1);
+            }
+        }
+        out.close();
+    }
+
+    private void writeEdge(OutputLog out, int fromX, int fromY, int toX, int toY) {
+        long edge = ((long) fromX * height + fromY) * 2 + (toX > fromX ? 0 : 1);
+        int scale = 1;
+        for (int i = 0; i < decimals; i++) scale *= 10;
+        int scaled = scale + (int) Long.remainderUnsigned(hash(edge, 2), 9L * scale + 1);
+
+        out.append(fromX).append('-').append(fromY).append(',').append(toX).append('-').append(toY).append(' ');
+        out.append(scaled / scale);
+        if (decimals > 0) {
+            out.append('.');
+            int fraction = scaled % scale;
+            for (int digit = scale / 10; digit > 0; digit /= 10) {
+                out.append((char) ('0' + fraction / digit % 10));
+            }
+        }
+        out.endLine();
+    }
+
+    // Radius, a start cell and objectives on free cells, half of them offering help
+    private void writeMission(String file) throws IOException {
+        SplittableRandom random = new SplittableRandom(seed);
+        OutputLog out = new OutputLog(file, false);
+        out.append(radius).endLine();
+
+        int start = freeCell(random);
+        out.append(start / height).append(' ').append(start % height).endLine();
+        for (int i = 0; i < objectives; i++) {
+            int cell = freeCell(random);
+            out.append(cell / height).append(' ').append(cell % height);
+            if (types > 0 && options > 0 && random.nextBoolean()) {
+                ArrayList<Integer> offered = new ArrayList<>();
+                int count = 1 + random.nextInt(Math.min(options, types));
+                while (offered.size() < count) {
+                    int option = 2 + random.nextInt(types);
+                    if (!offered.contains(option)) offered.add(option);
+                }
+                for (int option : offered) {
+                    out.append(' ').append(option);
+                }
+            }
+            out.endLine();
+        }
+        out.close();
+    }
+
+    private int freeCell(SplittableRandom random) {
+        for (int attempt = 0; attempt < 1_000_000; attempt++) {
+            int cell = random.nextInt(width * height);
+            if (cellType(cell / height, cell % height) == 0) return cell;
+        }
+        throw new IllegalStateException("No free cells on the map");
+    }
+
+    private int cellType(int x, int y) {
+        long cell = (long) x * height + y;
+        double u = (hash(cell, 1) >>> 11) * 0x1.0p-53;
+        if (u < walls) return 1;
+        if (u < walls + density && types > 0) return 2 + (int) Long.remainderUnsigned(hash(cell, 3), types);
+        return 0;
+    }
+
+    // SplitMix64 finalizer over the seed, a stream number and a position
+    private long hash(long position, long stream) {
+        long z = seed * 0x9e3779b97f4a7c15L + stream * 0xbf58476d1ce4e5b9L + position;
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
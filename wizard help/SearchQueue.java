@@ -0,0 +1,16 @@
+/**
+ * Priority queue of cell ids keyed by double priorities, used by the path searches.
+ */
+interface SearchQueue {
+    // Remove all cells from the queue
+    void clear();
+
+    // Insert a cell, or lower its priority if the queue supports decrease-key
+    void insert(int cell, double key);
+
+    // Remove and return the cell with the smallest priority
+    int extractMin();
+
+    // Check if the queue is empty
+    boolean isEmpty();
+}
@@ -0,0 +1,56 @@
+/**
+ * Per-cell state of one search: distance, parent and settled flag. Each entry carries the
+ * epoch of the search that wrote it and counts only in that search, so starting a search is
+ * a counter increment instead of a sweep over the map, and a search costs time in proportion
+ * to the cells it touches. Separate instances are independent, so several searches, such as
+ * the two halves of a bidirectional search, can be in flight at once.
+ */
+abstract class SearchScratch {
+    final int cellCount;
+    int epoch;
+
+    SearchScratch(int cellCount) {
+        this.cellCount = cellCount;
+    }
+
+    /**
+     * Scratch for searches on the given map: tiles allocated as searches reach them when
+     * most of the map's tiles hold no cells, otherwise flat arrays, or flat pages off the heap
+     * with off-heap storage.
+     */
+    static SearchScratch create(Grid grid) {
+        if (grid.isSparse()) return new TiledSearchScratch(grid.cellCount());
+        return Functions.storageKind.equals("heap")
+                ? new FlatSearchScratch(grid.cellCount())
+                : new OffHeapSearchScratch(Functions.storageKind, grid.cellCount());
+    }
+
+    /**
+     * Starts a new search: every cell is unreached and unsettled again.
+     */
+    void reset() {
+        if (++epoch == Integer.MAX_VALUE / 2) {
+            // Stamps would repeat after the wrap, so clear them once
+            clearStamps();
+            epoch = 1;
+        }
+    }
+
+    abstract void clearStamps();
+
+    // Distance of a cell in the current search, Double.MAX_VALUE if it was not reached
+    abstract double distance(int cell);
+
+    // Distance of a cell known to be reached in the current search, read without the check
+    abstract double reachedDistance(int cell);
+
+    // Parent of a cell in the current search, -1 for the source and unreached cells
+    abstract int parent(int cell);
+
+    abstract void update(int cell, double cellDistance, int cellParent);
+
+    abstract boolean isSettled(int cell);
+
+    // Settles a cell reached in the current search
+    abstract void settle(int cell);
+}
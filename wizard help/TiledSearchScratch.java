@@ -0,0 +1,65 @@
+import java.util.Arrays;
+
+/**
+ * Search state in tiles like the grid's, allocated when a search first reaches a cell in
+ * them, so on a sparse map it takes memory for the reachable cells only. Every access goes
+ * through the tile, which makes it slower than FlatSearchScratch on dense maps.
+ */
+class TiledSearchScratch extends SearchScratch {
+    private final double[][] distance;
+    private final int[][] parent;
+    // 2 * epoch once distance and parent are written in that epoch, plus 1 once settled
+    private final int[][] stamp;
+
+    TiledSearchScratch(int cellCount) {
+        super(cellCount);
+        int tileCount = Grid.tileCount(cellCount);
+        distance = new double[tileCount][];
+        parent = new int[tileCount][];
+        stamp = new int[tileCount][];
+    }
+
+    void clearStamps() {
+        for (int[] tile : stamp) {
+            if (tile != null) Arrays.fill(tile, 0);
+        }
+    }
+
+    double distance(int cell) {
+        int[] tile = stamp[cell >>> Grid.TILE_BITS];
+        return tile != null && tile[cell & Grid.TILE_MASK] >> 1 == epoch
+                ? distance[cell >>> Grid.TILE_BITS][cell & Grid.TILE_MASK] : Double.MAX_VALUE;
+    }
+
+    double reachedDistance(int cell) {
+        return distance[cell >>> Grid.TILE_BITS][cell & Grid.TILE_MASK];
+    }
+
+    int parent(int cell) {
+        int[] tile = stamp[cell >>> Grid.TILE_BITS];
+        return tile != null && tile[cell & Grid.TILE_MASK] >> 1 == epoch
+                ? parent[cell >>> Grid.TILE_BITS][cell & Grid.TILE_MASK] : -1;
+    }
+
+    void update(int cell, double cellDistance, int cellParent) {
+        int tileIndex = cell >>> Grid.TILE_BITS;
+        if (stamp[tileIndex] == null) {
+            distance[tileIndex] = new double[Grid.TILE_SIZE];
+            parent[tileIndex] = new int[Grid.TILE_SIZE];
+            stamp[tileIndex] = new int[Grid.TILE_SIZE];
+        }
+        int index = cell & Grid.TILE_MASK;
+        stamp[tileIndex][index] = epoch << 1;
+        distance[tileIndex][index] = cellDistance;
+        parent[tileIndex][index] = cellParent;
+    }
+
+    boolean isSettled(int cell) {
+        int[] tile = stamp[cell >>> Grid.TILE_BITS];
+        return tile != null && tile[cell & Grid.TILE_MASK] == (epoch << 1 | 1);
+    }
+
+    void settle(int cell) {
+        stamp[cell >>> Grid.TILE_BITS][cell & Grid.TILE_MASK] = epoch << 1 | 1;
+    }
+}
@@ -0,0 +1,190 @@
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Batches of travel-time changes applied while a mission is simulated. Each batch is applied
+ * whole between two moves, so no search sees half of it.
+ *
+ * Feed format: lines "x-y,x-y time" as in the travel-time file, where a time of 0 removes
+ * the edge. A blank line ends a batch. A line "at N" starts a batch applied just before the
+ * visitor's Nth move of the mission; other batches share the move of the batch before them,
+ * 0 for the first one. Lines starting with '#' are ignored, and lines that do not
+ * name an edge of the map are reported and skipped.
+ *
+ * Feeds are read by a background thread. The simulation waits for a file to be read up to
+ * the next batch, so a feed file always gives the same output. Standard input and submitted
+ * batches are live: the simulation applies what has arrived and never waits.
+ */
+class TravelTimeFeed {
+    // Batches applied, edges whose time changed, and paths replanned because of them
+    static final LongAdder batchesApplied = new LongAdder();
+    static final LongAdder edgesChanged = new LongAdder();
+    static final LongAdder replans = new LongAdder();
+
+    private static final Batch END = new Batch(Long.MAX_VALUE);
+
+    private final BlockingQueue<Batch> batches = new LinkedBlockingQueue<>();
+    private final boolean live;
+    private Batch pending; // Next batch, taken from the queue but not yet due
+
+    /**
+     * A set of edge times applied together.
+     */
+    static final class Batch {
+        final long move; // Applied before this move, counted from 1
+        int size;
+        int[] from = new int[16];
+        int[] to = new int[16];
+        double[] times = new double[16];
+
+        Batch(long move) {
+            this.move = move;
+        }
+
+        // Sets the time of the edge between two adjacent cells
+        void add(int fromCell, int toCell, double time) {
+            if (size == from.length) {
+                from = Arrays.copyOf(from, size * 2);
+                to = Arrays.copyOf(to, size * 2);
+                times = Arrays.copyOf(times, size * 2);
+            }
+            from[size] = fromCell;
+            to[size] = toCell;
+            times[size] = time;
+            size++;
+        }
+    }
+
+    /**
+     * Creates a live feed that batches are submitted to.
+     */
+    TravelTimeFeed() {
+        this(true);
+    }
+
+    private TravelTimeFeed(boolean live) {
+        this.live = live;
+    }
+
+    /**
+     * Starts reading a feed of the given map from a file, or from standard input for "-".
+     */
+    static TravelTimeFeed open(String source, Grid grid) throws IOException {
+        boolean standardInput = source.equals("-");
+        Reader input = standardInput ? new InputStreamReader(System.in) : new FileReader(source);
+        TravelTimeFeed feed = new TravelTimeFeed(standardInput);
+        Thread reader = new Thread(() -> feed.read(new BufferedReader(input), source, grid), "travel-time-feed");
+        reader.setDaemon(true);
+        reader.start();
+        return feed;
+    }
+
+    /**
+     * Queues a batch; its edges must connect adjacent cells and its times must not be negative.
+     */
+    void submit(Batch batch) {
+        batches.add(batch);
+    }
+
+    /**
+     * Marks the end of the feed: nothing is submitted after it.
+     */
+    void end() {
+        batches.add(END);
+    }
+
+    /**
+     * Returns the next batch due before the given move, or null if there is none yet.
+     */
+    Batch poll(long move) {
+        if (pending == null) pending = live ? batches.poll() : take();
+        if (pending == null || pending == END || pending.move > move) return null;
+        Batch batch = pending;
+        pending = null;
+        return batch;
+    }
+
+    private Batch take() {
+        try {
+            return batches.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    // Parses the feed into batches until its end
+    private void read(BufferedReader reader, String source, Grid grid) {
+        long move = 0;
+        Batch batch = null;
+        int lineNumber = 0;
+        try (reader) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty()) {
+                    if (batch != null) submit(batch);
+                    batch = null;
+                    continue;
+                }
+                if (line.startsWith("#")) continue;
+                try {
+                    if (line.startsWith("at ")) {
+                        long at = Long.parseLong(line.substring(3).trim());
+                        if (at < move) throw new IllegalArgumentException("batches must be in move order");
+                        if (batch != null) submit(batch);
+                        move = at;
+                        batch = new Batch(move);
+                        continue;
+                    }
+                    if (batch == null) batch = new Batch(move);
+                    parseEdge(line, grid, batch);
+                } catch (IllegalArgumentException e) {
+                    System.err.println("Ignoring line " + lineNumber + " of travel-time feed " + source + ": " + e.getMessage());
+                }
+            }
+            if (batch != null) submit(batch);
+        } catch (IOException e) {
+            System.err.println("Error reading travel-time feed " + source + ": " + e.getMessage());
+        } finally {
+            end();
+        }
+    }
+
+    // Adds a line "x-y,x-y time" to the batch
+    private static void parseEdge(String line, Grid grid, Batch batch) {
+        String[] fields = line.split("\\s+");
+        String[] cells = fields[0].split(",");
+        if (fields.length != 2 || cells.length != 2) throw new IllegalArgumentException("expected \"x-y,x-y time\"");
+        int from = parseCell(cells[0], grid);
+        int to = parseCell(cells[1], grid);
+        double time = Double.parseDouble(fields[1]);
+        if (!(time >= 0) || Double.isInfinite(time)) throw new IllegalArgumentException("bad travel time " + fields[1]);
+        if (Math.abs(grid.x(from) - grid.x(to)) + Math.abs(grid.y(from) - grid.y(to)) != 1) {
+            throw new IllegalArgumentException("cells are not adjacent");
+        }
+        batch.add(from, to, time);
+    }
+
+    // Cell of "x-y", which has to be on the map
+    private static int parseCell(String coordinates, Grid grid) {
+        String[] parts = coordinates.split("-");
+        if (parts.length != 2) throw new IllegalArgumentException("expected \"x-y\", got " + coordinates);
+        int x = Integer.parseInt(parts[0]);
+        int y = Integer.parseInt(parts[1]);
+        if (!onGrid(grid, x, y)) throw new IllegalArgumentException("cell " + coordinates + " is outside the map");
+        return grid.cellOf(x, y);
+    }
+
+    private static boolean onGrid(Grid grid, int x, int y) {
+        return x >= 0 && y >= 0 && x < grid.width && y < grid.height;
+    }
+}
@@ -0,0 +1,38 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Travel times of a map's edges, kept once per edge: for every cell the time towards x + 1
+ * and towards y + 1, 0 where there is no edge. Written while the map is parsed and shared
+ * by every copy of the map afterwards.
+ */
+interface TravelTimes {
+    double xPlus(int cell);
+
+    double yPlus(int cell);
+
+    void setXPlus(int cell, double time);
+
+    void setYPlus(int cell, double time);
+
+    /**
+     * Creates storage for the given number of cells: heap arrays, direct buffers, or a
+     * memory-mapped temporary file.
+     */
+    static TravelTimes allocate(String storage, int cellCount) {
+        switch (storage) {
+            case "heap":
+                return new HeapTravelTimes(cellCount);
+            case "direct":
+                return OffHeapTravelTimes.allocateDirect(cellCount);
+            case "mapped":
+                try {
+                    return OffHeapTravelTimes.mapTemporary(cellCount);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            default:
+                throw new IllegalArgumentException("Unknown storage: " + storage);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+import java.util.Arrays;
+
+/**
+ * Lists the cells of each type, so operations on one type touch only those cells.
+ * Types are kept sorted and found by binary search, since a map has only a few of them.
+ */
+class TypeIndex {
+    private static final int[] NO_CELLS = new int[0];
+
+    private int[] types = new int[0]; // Distinct types in ascending order
+    private int[][] cells = new int[0][];
+    private int[] counts = new int[0];
+
+    TypeIndex(Grid grid) {
+        for (int cell = 0; cell < grid.cellCount(); cell++) {
+            if (grid.exists(cell)) add(grid.type(cell), cell);
+        }
+    }
+
+    /**
+     * Returns the cells of the given type; only the first count(type) entries are valid.
+     */
+    int[] cells(int type) {
+        int slot = Arrays.binarySearch(types, type);
+        return slot >= 0 ? cells[slot] : NO_CELLS;
+    }
+
+    /**
+     * Returns the number of cells of the given type.
+     */
+    int count(int type) {
+        int slot = Arrays.binarySearch(types, type);
+        return slot >= 0 ? counts[slot] : 0;
+    }
+
+    /**
+     * Moves every cell of one type to another type, as makeChanges does on the map.
+     */
+    void retype(int from, int to) {
+        int fromSlot = Arrays.binarySearch(types, from);
+        if (from == to || fromSlot < 0) return;
+
+        int[] moved = cells[fromSlot];
+        int movedCount = counts[fromSlot];
+        cells[fromSlot] = NO_CELLS;
+        counts[fromSlot] = 0;
+
+        int toSlot = slotFor(to);
+        int count = counts[toSlot];
+        if (count + movedCount > cells[toSlot].length) {
+            cells[toSlot] = Arrays.copyOf(cells[toSlot], count + movedCount);
+        }
+        System.arraycopy(moved, 0, cells[toSlot], count, movedCount);
+        counts[toSlot] = count + movedCount;
+    }
+
+    private void add(int type, int cell) {
+        int slot = slotFor(type);
+        int count = counts[slot];
+        if (count == cells[slot].length) {
+            cells[slot] = Arrays.copyOf(cells[slot], Math.max(16, count * 2));
+        }
+        cells[slot][count] = cell;
+        counts[slot] = count + 1;
+    }
+
+    // Returns the slot of a type, inserting an empty one in sorted position if needed
+    private int slotFor(int type) {
+        int slot = Arrays.binarySearch(types, type);
+        if (slot >= 0) return slot;
+
+        slot = -slot - 1;
+        types = insertAt(types, slot, type);
+        counts = insertAt(counts, slot, 0);
+
+        int[][] newCells = new int[cells.length + 1][];
+        System.arraycopy(cells, 0, newCells, 0, slot);
+        newCells[slot] = NO_CELLS;
+        System.arraycopy(cells, slot, newCells, slot + 1, cells.length - slot);
+        cells = newCells;
+        return slot;
+    }
+
+    private static int[] insertAt(int[] array, int index, int value) {
+        int[] result = new int[array.length + 1];
+        System.arraycopy(array, 0, result, 0, index);
+        result[index] = value;
+        System.arraycopy(array, index, result, index + 1, array.length - index);
+        return result;
+    }
+}
@@ -0,0 +1,226 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Several visitors on one shared map, each following its own mission. What a visitor
+ * reveals is seen by the planners of all the others.
+ *
+ * The visitors move in rounds of four phases:
+ * 1. Every visitor plans a path if it has none, then makes one move. The map is only read.
+ * 2. The visitors that moved reveal around their new cells, in visitor order.
+ * 3. Every visitor checks the cells revealed since its path was planned against the rest of
+ *    its path, and replans in the next round only if one of them is on it.
+ * 4. The visitors that reached an objective take the wizard's help and reveal around the
+ *    objective, in visitor order.
+ * Phases 1 and 3 run concurrently, one task per visitor; phases 2 and 4 write the map
+ * alone. No phase reads the map while another writes it, so the shared state needs no
+ * locks, and every output log is the same however the tasks are scheduled. A single
+ * visitor writes the same log as Mission.simulate.
+ */
+class VisitorSimulation {
+    private final List<Visitor> visitors = new ArrayList<>();
+    private final ForkJoinPool pool;
+
+    // Cells revealed in the current round; the first carriedCount were revealed in phase 4
+    // of the previous round, before this round's paths were planned
+    private int[] revealed = new int[64];
+    private int revealedCount;
+    private int carriedCount;
+
+    /**
+     * @param missions Missions on the same map, sharing its type index.
+     * @param threads  Number of visitors stepped at once in the concurrent phases.
+     */
+    VisitorSimulation(List<Mission> missions, int threads) {
+        for (Mission mission : missions) visitors.add(new Visitor(mission));
+        pool = new ForkJoinPool(Math.max(1, threads));
+    }
+
+    /**
+     * Runs every visitor to the end of its mission.
+     */
+    void run() {
+        try {
+            for (Visitor visitor : visitors) {
+                if (visitor.mission.objectives.isEmpty()) {
+                    visitor.finished = true;
+                } else {
+                    startObjective(visitor);
+                }
+            }
+            while (visitors.stream().anyMatch(visitor -> !visitor.finished)) {
+                carriedCount = revealedCount;
+                forEachVisitor(this::planAndMove);
+                for (Visitor visitor : visitors) {
+                    if (visitor.moved) reveal(visitor, visitor.path[visitor.step]);
+                }
+                forEachVisitor(this::checkPath);
+
+                revealedCount = 0;
+                for (Visitor visitor : visitors) {
+                    if (visitor.arrived) reachObjective(visitor);
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    // Runs the action for every visitor still on its way, concurrently
+    private void forEachVisitor(IntConsumer action) {
+        pool.submit(() -> IntStream.range(0, visitors.size()).parallel().forEach(action)).join();
+    }
+
+    // Phase 1: plans a path if needed and makes the next move along it
+    private void planAndMove(int index) {
+        Visitor visitor = visitors.get(index);
+        visitor.moved = false;
+        visitor.arrived = false;
+        visitor.planned = false;
+        if (visitor.finished) return;
+
+        Mission mission = visitor.mission;
+        if (visitor.pathLength == 0) {
+            int target = mission.objectives.get(visitor.objective).target;
+            visitor.pathLength = mission.planPath(visitor.planner, visitor.currentCell, target, visitor.path);
+            visitor.blockedBeforeStart = mission.markPath(visitor.pathMembers, visitor.path, visitor.pathLength);
+            visitor.step = 1;
+            visitor.planned = true;
+        }
+        if (visitor.step >= visitor.pathLength) {
+            // Nowhere to move: the visitor already stands on the objective
+            endPath(visitor);
+            visitor.arrived = true;
+            return;
+        }
+        int cell = visitor.path[visitor.step];
+        mission.outputLog.append("Moving to ").append(mission.grid.x(cell)).append('-').append(mission.grid.y(cell)).endLine();
+        visitor.moved = true;
+    }
+
+    // Phase 3: replans if a newly revealed cell is on the path, otherwise goes on or arrives
+    private void checkPath(int index) {
+        Visitor visitor = visitors.get(index);
+        if (!visitor.moved) return;
+
+        // A path planned this round already avoids what the previous round revealed, and a
+        // path that was blocked when it was planned breaks on the first move
+        int from = visitor.planned ? carriedCount : 0;
+        Mission mission = visitor.mission;
+        if ((visitor.step == 1 && visitor.blockedBeforeStart)
+                || mission.crossesPath(visitor.pathMembers, revealed, from, revealedCount)) {
+            mission.outputLog.append("Path is impassable!").endLine();
+            visitor.currentCell = visitor.path[visitor.step];
+            endPath(visitor);
+            if (Metrics.enabled) Metrics.replans.increment();
+        } else if (visitor.step == visitor.pathLength - 1) {
+            endPath(visitor);
+            visitor.arrived = true;
+        } else {
+            visitor.step++;
+        }
+    }
+
+    // Phase 4: logs the objective, takes the wizard's help and heads for the next objective
+    private void reachObjective(Visitor visitor) {
+        Mission mission = visitor.mission;
+        int index = visitor.objective;
+        Objective objective = mission.objectives.get(index);
+        mission.outputLog.append("Objective ").append(index + 1).append(" reached!").endLine();
+
+        if (objective.offersHelp) {
+            // Evaluating the options changes only cells of their types, so those are the
+            // cells the other visitors have to hear about
+            int[] changed = optionCells(mission.typeIndex, objective.helpOptions);
+            int bestOption = mission.handleWizardHelp(objective.helpOptions, objective.target,
+                    (index + 1 < mission.objectives.size()) ? mission.objectives.get(index + 1).target : -1);
+            mission.outputLog.append("Number ").append(bestOption).append(" is chosen!").endLine();
+            mission.makeChanges(bestOption);
+            for (Visitor other : visitors) {
+                if (other == visitor) continue;
+                notifyChanged(other, changed, changed.length);
+                other.mission.landmarks = mission.landmarks;
+                other.mission.lastRevealCenter = -1;
+            }
+        }
+
+        visitor.currentCell = objective.target;
+        visitor.objective++;
+        if (visitor.objective == mission.objectives.size()) {
+            visitor.finished = true;
+        } else {
+            startObjective(visitor);
+        }
+    }
+
+    // Reveals around the visitor's cell and sets up the planner for its current objective
+    private void startObjective(Visitor visitor) {
+        reveal(visitor, visitor.currentCell);
+        int target = visitor.mission.objectives.get(visitor.objective).target;
+        visitor.planner = Functions.incrementalReplanning ? visitor.mission.incrementalPlanner(target) : null;
+    }
+
+    // Reveals around a cell, adds the new cells to the round and tells the other visitors
+    private void reveal(Visitor visitor, int cell) {
+        Mission mission = visitor.mission;
+        int count = mission.revealNodes(cell, mission.radius);
+        if (visitor.planner != null) visitor.planner.cellsChanged(mission.newlyRevealed, count);
+        for (Visitor other : visitors) {
+            if (other != visitor) notifyChanged(other, mission.newlyRevealed, count);
+        }
+        if (revealedCount + count > revealed.length) {
+            revealed = Arrays.copyOf(revealed, Math.max(revealed.length * 2, revealedCount + count));
+        }
+        System.arraycopy(mission.newlyRevealed, 0, revealed, revealedCount, count);
+        revealedCount += count;
+    }
+
+    private static void notifyChanged(Visitor visitor, int[] cells, int count) {
+        if (visitor.finished) return;
+        visitor.mission.cellsChanged(cells, count);
+        if (visitor.planner != null) visitor.planner.cellsChanged(cells, count);
+    }
+
+    private static void endPath(Visitor visitor) {
+        visitor.mission.unmarkPath(visitor.pathMembers, visitor.path, visitor.pathLength);
+        visitor.pathLength = 0;
+    }
+
+    private static int[] optionCells(TypeIndex typeIndex, List<Integer> options) {
+        int[] cells = new int[0];
+        for (int type : options) {
+            int start = cells.length;
+            cells = Arrays.copyOf(cells, start + typeIndex.count(type));
+            System.arraycopy(typeIndex.cells(type), 0, cells, start, typeIndex.count(type));
+        }
+        return cells;
+    }
+
+    // Where one visitor is on its mission
+    private static final class Visitor {
+        final Mission mission;
+        final long[] pathMembers; // Cells of the path being followed
+        final int[] path;         // Path being followed, 0 cells when a plan is needed
+        int pathLength;
+        int step;                 // Index in path of the next move
+        int objective;            // Index of the objective being travelled to
+        int currentCell;
+        DStarLite planner;        // Incremental planner of the current objective, if used
+        boolean blockedBeforeStart;
+        boolean planned;          // The path was planned in this round
+        boolean moved;            // Made a move in this round
+        boolean arrived;          // Reached its objective in this round
+        boolean finished;
+
+        Visitor(Mission mission) {
+            this.mission = mission;
+            this.pathMembers = new long[(mission.grid.cellCount() + 63) >>> 6];
+            this.path = new int[mission.grid.maxPathLength()];
+            this.currentCell = mission.startCell;
+        }
+    }
+}